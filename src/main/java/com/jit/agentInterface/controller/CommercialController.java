@@ -6,7 +6,10 @@ import com.jit.agentInterface.model.Bouteille;
 import com.jit.agentInterface.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -55,4 +58,36 @@ public class CommercialController {
     public ResponseEntity<Boite> creerBoite(@RequestBody BoiteRequest req) {
         return ResponseEntity.ok(productService.createBoite(req.bouteilles, req.quantite, req.prix));
     }
+
+    public record BoiteIdsRequest(@NotEmpty List<@NotNull Long> bouteilleIds, int quantite, double prix) {}
+    public record BoitesBatchRequest(@NotEmpty List<@Valid BoiteIdsRequest> boites) {}
+    public record BoitesBatchResponse(int count, List<Long> ids) {}
+
+    @PostMapping("/boites/batch")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_commercial.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Créer plusieurs boites en une transaction (bouteilles designees par leurs ids)")
+    public ResponseEntity<BoitesBatchResponse> creerBoites(@Valid @RequestBody BoitesBatchRequest req) {
+        var commandes = req.boites().stream()
+                .map(b -> new ProductService.BoiteCommande(b.bouteilleIds(), b.quantite(), b.prix()))
+                .toList();
+        List<Boite> boites = productService.createBoites(commandes);
+        return ResponseEntity.ok(new BoitesBatchResponse(boites.size(), boites.stream().map(Boite::getId).toList()));
+    }
+
+    public record BoitesLotRequest(@NotNull Long lotId, @Positive int cartons, double prix) {}
+
+    @PostMapping("/boites/lot")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_commercial.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Emballer des cartons depuis un lot de bouteilles (ratio selon le litrage du lot)")
+    public ResponseEntity<BoitesBatchResponse> creerBoitesDepuisLot(@Valid @RequestBody BoitesLotRequest req) {
+        List<Boite> boites = productService.createBoitesDepuisLot(req.lotId(), req.cartons(), req.prix());
+        return ResponseEntity.ok(new BoitesBatchResponse(boites.size(), boites.stream().map(Boite::getId).toList()));
+    }
+
+    @GetMapping("/boites/{id}/composition")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_commercial.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Composition d'une boite: lot d'origine ou identifiants des bouteilles (plages compactes)")
+    public ResponseEntity<ProductService.Composition> composition(@PathVariable Long id) {
+        return ResponseEntity.ok(productService.composition(id));
+    }
 }
@@ -0,0 +1,75 @@
+package com.jit.agentInterface.controller;
+
+import com.jit.agentInterface.enums.EventType;
+import com.jit.agentInterface.enums.Role;
+import com.jit.agentInterface.service.EventLogService;
+import com.jit.agentInterface.service.EventStreamService;
+import com.jit.agentInterface.service.ServiceException;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/events")
+@Tag(name = "Evenements")
+public class EventController {
+
+    private final EventStreamService eventStreamService;
+    private final EventLogService eventLogService;
+
+    public EventController(EventStreamService eventStreamService, EventLogService eventLogService) {
+        this.eventStreamService = eventStreamService;
+        this.eventLogService = eventLogService;
+    }
+
+    // Evenements visibles par l'agent industriel (stock, emballage, ordres de fabrication); les ventes restent reservees a l'admin
+    private static final Set<EventType> TYPES_INDUSTRIELS = EnumSet.of(EventType.STOCK_CHANGED, EventType.PRODUCTION_RUN_FINISHED);
+
+    public record EventPage(List<EventLogService.Entry> events, long nextOffset) {}
+
+    @GetMapping
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Lire le journal d'événements à partir d'un offset",
+            description = "Retourne au plus limit événements d'offset strictement supérieur à after, dans l'ordre. "
+                    + "Rappeler avec after=nextOffset pour continuer.")
+    public ResponseEntity<EventPage> lire(@Parameter(description = "Dernier offset déjà consommé") @RequestParam(defaultValue = "0") long after,
+                                          @Parameter(description = "Nombre maximum d'événements (1-1000)") @RequestParam(defaultValue = "500") int limit,
+                                          @Parameter(description = "Types d'événements") @RequestParam(required = false) Set<EventType> types,
+                                          Authentication auth) {
+        List<EventLogService.Entry> events = eventLogService.read(after, limit, typesAutorises(types, auth));
+        long next = events.isEmpty() ? after : events.get(events.size() - 1).offset();
+        return ResponseEntity.ok(new EventPage(events, next));
+    }
+
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Flux temps réel des événements (Server-Sent Events)",
+            description = "Chaque événement SSE porte le nom de l'EventType et l'enveloppe JSON {eventType, timestamp, payload}. "
+                    + "Sans types => tous les événements. Un client trop lent est déconnecté.")
+    public SseEmitter stream(@Parameter(description = "Types d'événements") @RequestParam(required = false) Set<EventType> types,
+                             Authentication auth) {
+        return eventStreamService.subscribe(typesAutorises(types, auth));
+    }
+
+    // Restreint les types demandes (tous si absents) a ceux que le role peut voir
+    private static Set<EventType> typesAutorises(Set<EventType> demandes, Authentication auth) {
+        boolean admin = auth.getAuthorities().stream().anyMatch(a -> ("ROLE_" + Role.Admin.name()).equals(a.getAuthority()));
+        if (admin) return demandes;
+        if (demandes == null || demandes.isEmpty()) return TYPES_INDUSTRIELS;
+        Set<EventType> autorises = EnumSet.noneOf(EventType.class);
+        for (EventType t : demandes) if (TYPES_INDUSTRIELS.contains(t)) autorises.add(t);
+        if (autorises.isEmpty()) throw new ServiceException(HttpStatus.FORBIDDEN, "types d'evenements non autorises: " + demandes);
+        return autorises;
+    }
+}
@@ -2,14 +2,19 @@ package com.jit.agentInterface.controller;
 
 import com.jit.agentInterface.enums.Type;
 import com.jit.agentInterface.model.Bouteille;
+import com.jit.agentInterface.model.LotBouteilles;
 import com.jit.agentInterface.service.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/industrial")
 @Tag(name = "Agent industriel")
@@ -21,12 +26,39 @@ public class IndustrialController {
         this.productService = productService;
     }
 
-    public record BouteilleRequest(@NotNull Type type, double litrage, double prix) {}
+    public record BouteilleRequest(@NotNull Type type, double litrage, double prix, Long reservationId) {}
+    public record BouteilleBatchRequest(@NotNull Type type, double litrage, double prix, @Positive int count, Long reservationId) {}
+    public record BouteilleBatchResponse(Type type, double litrage, int count, List<Long> ids) {}
 
     @PostMapping("/bouteilles")
     @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
-    @Operation(summary = "Fabriquer une bouteille: consomme le stock brut du type choisi")
+    @Operation(summary = "Fabriquer une bouteille: consomme le stock brut du type choisi, ou la reservation indiquee")
     public ResponseEntity<Bouteille> fabriquerBouteille(@RequestBody BouteilleRequest req) {
-        return ResponseEntity.ok(productService.createBouteille(req.type, req.litrage, req.prix));
+        return ResponseEntity.ok(productService.createBouteille(req.type, req.litrage, req.prix, req.reservationId));
+    }
+
+    @PostMapping("/bouteilles/batch")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Fabriquer un lot de bouteilles identiques: un seul prelevement de stock (count x litrage) et un seul evenement")
+    public ResponseEntity<BouteilleBatchResponse> fabriquerBouteilles(@Valid @RequestBody BouteilleBatchRequest req) {
+        List<Bouteille> created = productService.createBouteilles(req.type(), req.litrage(), req.prix(), req.count(), req.reservationId());
+        return ResponseEntity.ok(new BouteilleBatchResponse(req.type(), req.litrage(), created.size(),
+                created.stream().map(Bouteille::getId).toList()));
+    }
+
+    public record LotRequest(@NotNull Type type, double litrage, double prix, @Positive int count, Long reservationId) {}
+
+    @PostMapping("/lots")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Fabriquer un lot de bouteilles identiques stocke en une seule ligne (pas de ligne par bouteille)")
+    public ResponseEntity<LotBouteilles> fabriquerLot(@Valid @RequestBody LotRequest req) {
+        return ResponseEntity.ok(productService.createLot(req.type(), req.litrage(), req.prix(), req.count(), req.reservationId()));
+    }
+
+    @GetMapping("/lots/{id}")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Consulter un lot de bouteilles (nombre fabrique, nombre deja emballe)")
+    public ResponseEntity<LotBouteilles> getLot(@PathVariable Long id) {
+        return ResponseEntity.ok(productService.getLot(id));
     }
 }
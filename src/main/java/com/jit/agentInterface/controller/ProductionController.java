@@ -0,0 +1,66 @@
+package com.jit.agentInterface.controller;
+
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.service.ProductionRunService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/production")
+@Tag(name = "Production")
+public class ProductionController {
+
+    private final ProductionRunService productionRunService;
+
+    public ProductionController(ProductionRunService productionRunService) {
+        this.productionRunService = productionRunService;
+    }
+
+    public record RunRequest(@NotNull Type type,
+                             @Positive double litrage,
+                             @Positive int cartons,
+                             Long chariotId,
+                             @PositiveOrZero double prixBouteille,
+                             @PositiveOrZero double prixBoite,
+                             Long reservationId) {}
+
+    @PostMapping("/runs")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Lancer un ordre de fabrication: stock brut -> bouteilles -> cartons -> chariot (asynchrone)")
+    public ResponseEntity<ProductionRunService.Run> lancer(@Valid @RequestBody RunRequest req) {
+        var run = productionRunService.lancer(new ProductionRunService.Commande(req.type(), req.litrage(), req.cartons(),
+                req.chariotId(), req.prixBouteille(), req.prixBoite(), req.reservationId()));
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(run);
+    }
+
+    @GetMapping("/runs")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Lister les ordres de fabrication recents (plus recent en premier)")
+    public ResponseEntity<List<ProductionRunService.Run>> list() {
+        return ResponseEntity.ok(productionRunService.list());
+    }
+
+    @GetMapping("/runs/{id}")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Suivre la progression d'un ordre de fabrication")
+    public ResponseEntity<ProductionRunService.Run> get(@PathVariable long id) {
+        return ResponseEntity.ok(productionRunService.get(id));
+    }
+
+    @DeleteMapping("/runs/{id}")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name(), T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Arreter un ordre de fabrication apres la tranche en cours")
+    public ResponseEntity<ProductionRunService.Run> annuler(@PathVariable long id) {
+        return ResponseEntity.ok(productionRunService.annuler(id));
+    }
+}
@@ -1,17 +1,23 @@
 package com.jit.agentInterface.controller;
 
 import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.model.StockMouvement;
 import com.jit.agentInterface.service.StockBruteService;
+import com.jit.agentInterface.service.StockHistoryService;
+import com.jit.agentInterface.service.StockJournalService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.transaction.Transactional;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -20,36 +26,94 @@ import java.util.Map;
 public class StockBruteController {
 
     private final StockBruteService stockService;
+    private final StockJournalService journalService;
+    private final StockHistoryService historyService;
 
-    public StockBruteController(StockBruteService stockService) {
+    public StockBruteController(StockBruteService stockService, StockJournalService journalService, StockHistoryService historyService) {
         this.stockService = stockService;
+        this.journalService = journalService;
+        this.historyService = historyService;
     }
 
     public record MouvementRequest(@NotNull Type type, @NotNull BigDecimal quantite) {}
+    public record LigneMouvement(@NotNull Type type, @NotNull BigDecimal delta) {}
+    public record MouvementsRequest(@NotEmpty List<@Valid LigneMouvement> mouvements) {}
 
     @PostMapping("/augmenter")
-    @Transactional
     @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
     @Operation(summary = "Augmenter la quantite du stock brut pour un type")
-    public ResponseEntity<Map<String, Object>> augmenter(@RequestBody MouvementRequest req) {
-        var q = stockService.augmenter(req.type, req.quantite);
-        return ResponseEntity.ok(Map.of("type", req.type, "quantite", q));
+    public ResponseEntity<Map<String, Object>> augmenter(@RequestBody MouvementRequest req, @Parameter(description = "Site / entrepot, site par defaut si absent") @RequestParam(required = false) String site) {
+        String s = stockService.site(site);
+        var q = stockService.augmenter(s, req.type, req.quantite);
+        return ResponseEntity.ok(Map.of("site", s, "type", req.type, "quantite", q));
     }
 
     @PostMapping("/diminuer")
-    @Transactional
     @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
     @Operation(summary = "Diminuer la quantite du stock brut pour un type")
-    public ResponseEntity<Map<String, Object>> diminuer(@RequestBody MouvementRequest req) {
-        var q = stockService.diminuer(req.type, req.quantite);
-        return ResponseEntity.ok(Map.of("type", req.type, "quantite", q));
+    public ResponseEntity<Map<String, Object>> diminuer(@RequestBody MouvementRequest req, @Parameter(description = "Site / entrepot, site par defaut si absent") @RequestParam(required = false) String site) {
+        String s = stockService.site(site);
+        var q = stockService.diminuer(s, req.type, req.quantite);
+        return ResponseEntity.ok(Map.of("site", s, "type", req.type, "quantite", q));
+    }
+
+    @GetMapping
+    @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Consulter les quantites de stock brut de tous les types pour un site")
+    public ResponseEntity<Map<Type, BigDecimal>> snapshot(@Parameter(description = "Site / entrepot, site par defaut si absent") @RequestParam(required = false) String site) {
+        return ResponseEntity.ok(stockService.quantites(site));
+    }
+
+    @GetMapping("/total")
+    @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Consulter les quantites de stock brut cumulees sur tous les sites")
+    public ResponseEntity<Map<Type, BigDecimal>> total() {
+        return ResponseEntity.ok(stockService.quantitesTotales());
     }
 
     @GetMapping("/quantite")
     @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
     @Operation(summary = "Consulter la quantite pour un type de stock brut")
-    public ResponseEntity<Map<String, Object>> quantite(@Parameter(description = "Type de produit") @RequestParam Type type) {
-        var q = stockService.quantite(type);
-        return ResponseEntity.ok(Map.of("type", type, "quantite", q));
+    public ResponseEntity<Map<String, Object>> quantite(@Parameter(description = "Type de produit") @RequestParam Type type, @Parameter(description = "Site / entrepot, site par defaut si absent") @RequestParam(required = false) String site) {
+        String s = stockService.site(site);
+        var q = stockService.quantite(s, type);
+        return ResponseEntity.ok(Map.of("site", s, "type", type, "quantite", q));
+    }
+
+    @PostMapping("/mouvements")
+    @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Appliquer plusieurs mouvements signes (delta > 0 entree, < 0 sortie) en une transaction")
+    public ResponseEntity<Map<Type, BigDecimal>> appliquer(@Valid @RequestBody MouvementsRequest req, @Parameter(description = "Site / entrepot, site par defaut si absent") @RequestParam(required = false) String site) {
+        var mouvements = req.mouvements().stream()
+                .map(l -> new StockBruteService.Mouvement(l.type(), l.delta()))
+                .toList();
+        return ResponseEntity.ok(stockService.appliquer(site, mouvements));
+    }
+
+    @GetMapping("/mouvements")
+    @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Historique des mouvements de stock brut, du plus recent au plus ancien")
+    public ResponseEntity<List<StockMouvement>> mouvements(@Parameter(description = "Type de produit") @RequestParam(required = false) Type type,
+                                                           @Parameter(description = "Debut (ISO-8601)") @RequestParam(required = false) Instant from,
+                                                           @Parameter(description = "Fin (ISO-8601)") @RequestParam(required = false) Instant to,
+                                                           @RequestParam(defaultValue = "100") int limit,
+                                                           @Parameter(description = "Site / entrepot, site par defaut si absent") @RequestParam(required = false) String site) {
+        return ResponseEntity.ok(journalService.historique(stockService.site(site), type, from, to, limit));
+    }
+
+    @GetMapping("/mouvements/niveau")
+    @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Recalculer le niveau d'un type depuis le journal (dernier snapshot + mouvements posterieurs)")
+    public ResponseEntity<StockJournalService.Niveau> niveau(@Parameter(description = "Type de produit") @RequestParam Type type, @Parameter(description = "Site / entrepot, site par defaut si absent") @RequestParam(required = false) String site) {
+        return ResponseEntity.ok(journalService.niveau(stockService.site(site), type));
+    }
+
+    @GetMapping("/history")
+    @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Historique du niveau (min/max/dernier par periode), servi depuis la memoire sans acces base")
+    public ResponseEntity<List<StockHistoryService.Point>> history(@Parameter(description = "Type de produit") @RequestParam Type type,
+                                                                   @Parameter(description = "1s, 1m ou 1h") @RequestParam(defaultValue = "1m") String resolution,
+                                                                   @Parameter(description = "Site / entrepot, site par defaut si absent") @RequestParam(required = false) String site) {
+        return ResponseEntity.ok(historyService.historique(stockService.site(site), type, StockHistoryService.Resolution.parse(resolution)));
     }
 }
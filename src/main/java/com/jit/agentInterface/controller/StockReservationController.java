@@ -0,0 +1,77 @@
+package com.jit.agentInterface.controller;
+
+import com.jit.agentInterface.enums.ReservationStatus;
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.model.MillilitresConverter;
+import com.jit.agentInterface.model.StockReservation;
+import com.jit.agentInterface.service.StockReservationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/stock-brute/reservations")
+@Tag(name = "Stock brut")
+public class StockReservationController {
+
+    private final StockReservationService reservationService;
+
+    public StockReservationController(StockReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    public record ReservationRequest(@NotNull Type type,
+                                     @NotNull @Positive BigDecimal quantite,
+                                     @Size(max = 50) String site,
+                                     @Positive Long ttlMs,
+                                     @Size(max = 100) String reference) {}
+
+    /** Quantites en litres, comme a l'entree: l'entite les tient en millilitres. */
+    public record ReservationResponse(Long id, String site, Type type, BigDecimal quantite, BigDecimal consomme,
+                                      ReservationStatus status, String reference, String acteur, Instant createdAt, Instant expiresAt) {}
+
+    @PostMapping
+    @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Reserver du stock brut pour un ordre de production (preleve le stock, rendu a expiration)")
+    public ResponseEntity<ReservationResponse> reserver(@Valid @RequestBody ReservationRequest req) {
+        return ResponseEntity.ok(toResponse(reservationService.reserver(req.site(), req.type(), req.quantite(), req.ttlMs(), req.reference())));
+    }
+
+    @GetMapping
+    @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Lister les reservations par statut (ACTIVE par defaut)")
+    public ResponseEntity<List<ReservationResponse>> list(@Parameter(description = "Statut") @RequestParam(required = false) ReservationStatus status) {
+        return ResponseEntity.ok(reservationService.list(status).stream().map(this::toResponse).toList());
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Consulter une reservation")
+    public ResponseEntity<ReservationResponse> get(@PathVariable Long id) {
+        return ResponseEntity.ok(toResponse(reservationService.get(id)));
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasRole(T(com.jit.agentInterface.enums.Role).Agent_industrielle.name()) or hasRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Annuler une reservation: la partie non consommee est rendue au stock")
+    public ResponseEntity<ReservationResponse> annuler(@PathVariable Long id) {
+        return ResponseEntity.ok(toResponse(reservationService.annuler(id)));
+    }
+
+    private ReservationResponse toResponse(StockReservation r) {
+        return new ReservationResponse(r.getId(), r.getSite(), r.getType(),
+                MillilitresConverter.versLitres(r.getQuantite()), MillilitresConverter.versLitres(r.getConsomme()),
+                r.getStatus(), r.getReference(), r.getActeur(), r.getCreatedAt(), r.getExpiresAt());
+    }
+}
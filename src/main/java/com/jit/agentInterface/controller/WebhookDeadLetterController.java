@@ -0,0 +1,57 @@
+package com.jit.agentInterface.controller;
+
+import com.jit.agentInterface.enums.EventType;
+import com.jit.agentInterface.enums.WebhookDeliveryStatus;
+import com.jit.agentInterface.model.WebhookDeadLetter;
+import com.jit.agentInterface.service.WebhookDeadLetterService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/webhooks/dead-letters")
+@Tag(name = "Webhooks")
+public class WebhookDeadLetterController {
+
+    private final WebhookDeadLetterService service;
+
+    public WebhookDeadLetterController(WebhookDeadLetterService service) {
+        this.service = service;
+    }
+
+    public record DeadLetterResponse(Long id, Long subscriptionId, String targetUrl, EventType eventType, WebhookDeliveryStatus status,
+                                     int attempts, String lastError, Instant nextAttemptAt, Instant createdAt, Instant replayedAt, String body) {}
+
+    @GetMapping
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Lister les livraisons webhook en échec", description = "status=DEAD (abandonnées, par défaut) ou RETRYING (nouvelle tentative planifiée)")
+    public ResponseEntity<List<DeadLetterResponse>> list(@Parameter(description = "Statut") @RequestParam(defaultValue = "DEAD") WebhookDeliveryStatus status) {
+        return ResponseEntity.ok(service.list(status).stream().map(this::toResponse).toList());
+    }
+
+    @PostMapping("/{id}/replay")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Rejouer une livraison webhook", description = "Remet la livraison en file avec un compteur de tentatives remis à zéro.")
+    public ResponseEntity<DeadLetterResponse> replay(@PathVariable Long id) {
+        return ResponseEntity.accepted().body(toResponse(service.replay(id)));
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Supprimer une livraison webhook en échec")
+    public ResponseEntity<Void> delete(@PathVariable Long id) {
+        service.delete(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    private DeadLetterResponse toResponse(WebhookDeadLetter dl) {
+        return new DeadLetterResponse(dl.getId(), dl.getSubscriptionId(), dl.getTargetUrl(), dl.getEventType(), dl.getStatus(),
+                dl.getAttempts(), dl.getLastError(), dl.getNextAttemptAt(), dl.getCreatedAt(), dl.getReplayedAt(), dl.getBody());
+    }
+}
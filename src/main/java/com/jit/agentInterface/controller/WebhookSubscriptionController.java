@@ -2,11 +2,13 @@ package com.jit.agentInterface.controller;
 
 import com.jit.agentInterface.enums.EventType;
 import com.jit.agentInterface.model.WebhookSubscription;
+import com.jit.agentInterface.service.EventLogService;
 import com.jit.agentInterface.service.WebhookSubscriptionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -22,19 +24,24 @@ import java.util.stream.Collectors;
 public class WebhookSubscriptionController {
 
     private final WebhookSubscriptionService service;
+    private final EventLogService eventLogService;
 
-    public WebhookSubscriptionController(WebhookSubscriptionService service) {
+    public WebhookSubscriptionController(WebhookSubscriptionService service, EventLogService eventLogService) {
         this.service = service;
+        this.eventLogService = eventLogService;
     }
 
-    public record CreateSubscriptionRequest(@NotBlank String targetUrl, Set<EventType> eventTypes) {}
-    public record SubscriptionResponse(Long id, String targetUrl, boolean active, Set<EventType> eventTypes) {}
+    public record CreateSubscriptionRequest(@NotBlank String targetUrl, Set<EventType> eventTypes, Integer coalesceWindowMs, @Size(max = 500) String filter) {}
+    public record SubscriptionResponse(Long id, String targetUrl, boolean active, Set<EventType> eventTypes, int coalesceWindowMs, String filter) {}
 
     @PostMapping
     @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
-    @Operation(summary = "Créer une souscription webhook", description = "Si eventTypes est vide ou null => tous les événements seront envoyés.")
+    @Operation(summary = "Créer une souscription webhook", description = "Si eventTypes est vide ou null => tous les événements seront envoyés. "
+            + "coalesceWindowMs > 0 regroupe les STOCK_CHANGED d'un même type sur cette fenêtre (dernier état + delta cumulé). "
+            + "filter restreint les envois aux payloads correspondants, ex: \"type == ZITBLAD && remaining < 100\" ou \"vendeurId == 12\" "
+            + "(opérateurs ==, !=, <, <=, >, >=, clauses reliées par &&).")
     public ResponseEntity<SubscriptionResponse> create(@Valid @RequestBody CreateSubscriptionRequest req) {
-        WebhookSubscription saved = service.create(req.targetUrl(), req.eventTypes());
+        WebhookSubscription saved = service.create(req.targetUrl(), req.eventTypes(), req.coalesceWindowMs(), req.filter());
         return ResponseEntity.created(URI.create("/api/webhooks/subscriptions/" + saved.getId()))
                 .body(toResponse(saved));
     }
@@ -54,7 +61,18 @@ public class WebhookSubscriptionController {
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping("/{id}/replay")
+    @PreAuthorize("hasAnyRole(T(com.jit.agentInterface.enums.Role).Admin.name())")
+    @Operation(summary = "Rejouer le journal d'événements vers une souscription",
+            description = "Relivre les événements d'offset supérieur à after (au plus limit) correspondant aux types et au filtre de la souscription. "
+                    + "lastOffset permet d'enchaîner les appels.")
+    public ResponseEntity<EventLogService.ReplayResult> replay(@PathVariable Long id,
+                                                               @RequestParam(defaultValue = "0") long after,
+                                                               @RequestParam(defaultValue = "1000") int limit) {
+        return ResponseEntity.accepted().body(eventLogService.replay(id, after, limit));
+    }
+
     private SubscriptionResponse toResponse(WebhookSubscription sub) {
-        return new SubscriptionResponse(sub.getId(), sub.getTargetUrl(), sub.isActive(), sub.getEventTypes());
+        return new SubscriptionResponse(sub.getId(), sub.getTargetUrl(), sub.isActive(), sub.getEventTypes(), sub.getCoalesceWindowMs(), sub.getFilterExpression());
     }
 }
@@ -3,5 +3,6 @@ package com.jit.agentInterface.enums;
 public enum EventType {
     STOCK_CHANGED,
     VENTE_AU_VENDEUR_CREATED,
-    VENTE_DU_VENDEUR_CREATED
+    VENTE_DU_VENDEUR_CREATED,
+    PRODUCTION_RUN_FINISHED
 }
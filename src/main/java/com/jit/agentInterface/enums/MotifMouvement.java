@@ -0,0 +1,9 @@
+package com.jit.agentInterface.enums;
+
+public enum MotifMouvement {
+    APPROVISIONNEMENT,
+    RETRAIT,
+    BOUTEILLE,
+    RESERVATION,
+    LIBERATION
+}
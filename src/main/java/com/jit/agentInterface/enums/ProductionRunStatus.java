@@ -0,0 +1,9 @@
+package com.jit.agentInterface.enums;
+
+public enum ProductionRunStatus {
+    EN_ATTENTE,
+    EN_COURS,
+    TERMINE,
+    ECHEC,
+    ANNULE
+}
@@ -0,0 +1,8 @@
+package com.jit.agentInterface.enums;
+
+public enum ReservationStatus {
+    ACTIVE,
+    CONSOMMEE,
+    EXPIREE,
+    ANNULEE
+}
@@ -0,0 +1,6 @@
+package com.jit.agentInterface.enums;
+
+public enum WebhookDeliveryStatus {
+    RETRYING, // nouvelle tentative planifiee (next_attempt_at)
+    DEAD      // abandonnee, en attente d'un rejeu manuel
+}
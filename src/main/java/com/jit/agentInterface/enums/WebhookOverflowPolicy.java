@@ -0,0 +1,7 @@
+package com.jit.agentInterface.enums;
+
+public enum WebhookOverflowPolicy {
+    BLOCK,       // l'appelant attend qu'une place se libere dans la file
+    DROP_OLDEST, // l'evenement le plus ancien en attente est abandonne
+    REJECT       // le nouvel evenement est abandonne
+}
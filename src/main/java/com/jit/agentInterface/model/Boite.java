@@ -1,9 +1,13 @@
 package com.jit.agentInterface.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
+import jakarta.persistence.ManyToOne;
 
 import java.util.List;
 
@@ -11,18 +15,40 @@ import java.util.List;
 public class Boite extends Produit {
     private int quantite;
 
+    // ancien stockage, une ligne par bouteille: conserve pour les cartons existants, plus alimente
+    @JsonIgnore
     @ManyToMany
     @JoinTable(name = "boite_bouteilles",
             joinColumns = @JoinColumn(name = "boite_id"),
             inverseJoinColumns = @JoinColumn(name = "bouteille_id"))
     private List<Bouteille> bouteilles;
 
+    // carton emballe depuis un lot: pas de ligne par bouteille dans boite_bouteilles
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "lot_id")
+    private LotBouteilles lot;
+
+    // composition en plages d'identifiants (voir PlagesIds), decodee seulement a la demande
+    @JsonIgnore
+    @Column(columnDefinition = "text")
+    private String composition;
+
     public int getQuantite() { return quantite; }
     public void setQuantite(int quantite) { this.quantite = Math.max(0, quantite); }
 
     public List<Bouteille> getBouteilles() { return bouteilles; }
     public void setBouteilles(List<Bouteille> bouteilles) { this.bouteilles = bouteilles; }
 
+    public LotBouteilles getLot() { return lot; }
+    public void setLot(LotBouteilles lot) { this.lot = lot; }
+
+    // l'identifiant du proxy ne declenche pas de chargement du lot
+    public Long getLotId() { return lot == null ? null : lot.getId(); }
+
+    public String getComposition() { return composition; }
+    public void setComposition(String composition) { this.composition = composition; }
+
     // Métier
     public void augmenterQuantite(int qte) {
         if (qte < 0) throw new IllegalArgumentException("quantite negative");
@@ -7,13 +7,15 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
+import jakarta.persistence.SequenceGenerator;
 
 import java.util.List;
 
 @Entity
 public class Chariot {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chariot_seq")
+    @SequenceGenerator(name = "chariot_seq", sequenceName = "chariot_seq", allocationSize = 50)
     private Long id;
 
     @ManyToMany
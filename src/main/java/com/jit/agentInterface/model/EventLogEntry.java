@@ -0,0 +1,45 @@
+package com.jit.agentInterface.model;
+
+import com.jit.agentInterface.enums.EventType;
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "event_log", indexes = {
+        @Index(name = "idx_event_log_created_at", columnList = "created_at"),
+        @Index(name = "idx_event_log_offset", columnList = "log_offset", unique = true)
+})
+public class EventLogEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id; // ordre d'insertion, pas d'offset: une transaction lente peut valider un id inferieur
+
+    // offset attribue apres le commit, dans l'ordre de visibilite (voir EventLogService)
+    @Column(name = "log_offset")
+    private Long logOffset;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 50)
+    private EventType eventType;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public EventLogEntry() {}
+
+    public EventLogEntry(EventType eventType, String payload, Instant createdAt) {
+        this.eventType = eventType;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() { return id; }
+    public Long getLogOffset() { return logOffset; }
+    public EventType getEventType() { return eventType; }
+    public String getPayload() { return payload; }
+    public Instant getCreatedAt() { return createdAt; }
+}
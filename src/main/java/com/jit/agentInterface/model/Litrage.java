@@ -16,4 +16,7 @@ public class Litrage {
     }
 
     public double getValue() { return value; }
+
+    /** Volume en millilitres, exact pour les litrages supportes. */
+    public long millilitres() { return Math.round(value * 1000); }
 }
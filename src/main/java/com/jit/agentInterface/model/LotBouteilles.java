@@ -0,0 +1,70 @@
+package com.jit.agentInterface.model;
+
+import com.jit.agentInterface.enums.Type;
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Lot de bouteilles identiques issues d'une meme fabrication: une seule ligne pour tout le lot au lieu
+ * d'une ligne {@link Bouteille} par bouteille. Les cartons emballes depuis le lot le referencent et
+ * {@code emballees} compte les bouteilles deja mises en carton.
+ */
+@Entity
+@Table(name = "lot_bouteilles")
+public class LotBouteilles {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lot_bouteilles_seq")
+    @SequenceGenerator(name = "lot_bouteilles_seq", sequenceName = "lot_bouteilles_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Type type;
+
+    @Embedded
+    private Litrage litrage;
+
+    private double prix; // prix unitaire d'une bouteille du lot
+
+    @Column(nullable = false)
+    private int nombre;
+
+    @Column(nullable = false)
+    private int emballees;
+
+    @Column(name = "reservation_id")
+    private Long reservationId;
+
+    @Column(name = "produced_at", nullable = false)
+    private Instant producedAt;
+
+    public LotBouteilles() {}
+
+    public LotBouteilles(Type type, Litrage litrage, double prix, int nombre, Long reservationId, Instant producedAt) {
+        this.type = type;
+        this.litrage = litrage;
+        this.prix = prix;
+        this.nombre = nombre;
+        this.reservationId = reservationId;
+        this.producedAt = producedAt;
+    }
+
+    public Long getId() { return id; }
+    public Type getType() { return type; }
+    public Litrage getLitrage() { return litrage; }
+    public double getPrix() { return prix; }
+    public int getNombre() { return nombre; }
+    public int getEmballees() { return emballees; }
+    public Long getReservationId() { return reservationId; }
+    public Instant getProducedAt() { return producedAt; }
+
+    public int restantes() { return nombre - emballees; }
+
+    // Métier
+    public void emballer(int bouteilles) {
+        if (bouteilles < 0) throw new IllegalArgumentException("quantite negative");
+        if (bouteilles > restantes()) throw new IllegalArgumentException("lot insuffisant: " + restantes() + " bouteilles restantes");
+        this.emballees += bouteilles;
+    }
+}
@@ -0,0 +1,37 @@
+package com.jit.agentInterface.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+/**
+ * Quantites de stock tenues en millilitres (long) en memoire et stockees en litres (numeric) en base.
+ * Les litrages de bouteille (0.5, 1, 2, 5 L) sont des nombres entiers de millilitres.
+ */
+@Converter
+public class MillilitresConverter implements AttributeConverter<Long, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long ml) {
+        return ml == null ? null : versLitres(ml);
+    }
+
+    @Override
+    public Long convertToEntityAttribute(BigDecimal litres) {
+        return litres == null ? null : versMl(litres);
+    }
+
+    /** Litres vers millilitres; refuse une precision inferieure au millilitre. */
+    public static long versMl(BigDecimal litres) {
+        try {
+            return litres.movePointRight(3).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("precision maximale: 0.001");
+        }
+    }
+
+    public static BigDecimal versLitres(long ml) {
+        return BigDecimal.valueOf(ml, 3);
+    }
+}
@@ -0,0 +1,48 @@
+package com.jit.agentInterface.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodage compact d'une liste d'identifiants en plages: {@code "101-130"} pour trente bouteilles
+ * consecutives, {@code "5,9-11"} sinon. L'ordre de la liste est conserve; seules les suites croissantes
+ * d'identifiants consecutifs sont regroupees. Les bouteilles d'un meme lot de fabrication ont des
+ * identifiants contigus (sequence par blocs), d'ou en general une seule plage par carton.
+ */
+public final class PlagesIds {
+
+    private PlagesIds() {}
+
+    public static String encoder(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) return "";
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (i < ids.size()) {
+            long debut = ids.get(i);
+            int j = i;
+            while (j + 1 < ids.size() && ids.get(j + 1) == ids.get(j) + 1) j++;
+            if (sb.length() > 0) sb.append(',');
+            sb.append(debut);
+            if (j > i) sb.append('-').append(ids.get(j));
+            i = j + 1;
+        }
+        return sb.toString();
+    }
+
+    public static long[] decoder(String plages) {
+        if (plages == null || plages.isEmpty()) return new long[0];
+        long[] out = new long[16];
+        int n = 0;
+        for (String plage : plages.split(",")) {
+            int tiret = plage.indexOf('-', 1);
+            long debut = Long.parseLong(tiret < 0 ? plage : plage.substring(0, tiret));
+            long fin = tiret < 0 ? debut : Long.parseLong(plage.substring(tiret + 1));
+            if (fin < debut) throw new IllegalArgumentException("plage invalide: " + plage);
+            for (long id = debut; id <= fin; id++) {
+                if (n == out.length) out = Arrays.copyOf(out, n * 2);
+                out[n++] = id;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
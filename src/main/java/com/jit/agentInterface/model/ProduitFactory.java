@@ -1,44 +1,103 @@
 package com.jit.agentInterface.model;
 
+import com.jit.agentInterface.enums.MotifMouvement;
 import com.jit.agentInterface.enums.Type;
-import com.jit.agentInterface.enums.EventType;
-import com.jit.agentInterface.repository.StockBruteRepository;
-import com.jit.agentInterface.service.WebhookDispatcherService;
+import com.jit.agentInterface.service.StockBruteService;
+import com.jit.agentInterface.service.StockReservationService;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
 public class ProduitFactory {
 
-    private final StockBruteRepository stockRepo;
-    private final WebhookDispatcherService webhookDispatcher;
+    private final StockBruteService stockBruteService;
+    private final StockReservationService reservationService;
 
-    public ProduitFactory(StockBruteRepository stockRepo, WebhookDispatcherService webhookDispatcher) {
-        this.stockRepo = stockRepo;
-        this.webhookDispatcher = webhookDispatcher;
+    public ProduitFactory(StockBruteService stockBruteService, StockReservationService reservationService) {
+        this.stockBruteService = stockBruteService;
+        this.reservationService = reservationService;
     }
 
     public Bouteille createBouteille(Type type, double litrageValeur, double prix) {
-        // consume stock first (1 bottle consumes 'litrageValeur' from the matching container)
-        StockBrute sb = stockRepo.findAll().stream().findFirst().orElseGet(() -> stockRepo.save(new StockBrute()));
-        sb.diminuerQuantite(type, BigDecimal.valueOf(litrageValeur));
-        stockRepo.save(sb);
-        // publish stock change event
-        webhookDispatcher.publish(EventType.STOCK_CHANGED, java.util.Map.of(
-                "type", type.name(),
-                "delta", -litrageValeur,
-                "remaining", sb.quantite(type)
-        ));
+        return createBouteille(type, litrageValeur, prix, null);
+    }
+
+    public Bouteille createBouteille(Type type, double litrageValeur, double prix, Long reservationId) {
+        Litrage litrage = new Litrage(litrageValeur);
+        if (reservationId != null) {
+            // stock deja preleve a la reservation: seule la reservation est consommee
+            reservationService.consommer(reservationId, type, litrage.millilitres());
+        } else {
+            // consume stock first (1 bottle consumes its litrage, in ml, from the matching container); publishes STOCK_CHANGED
+            stockBruteService.diminuerMl(type, litrage.millilitres(), MotifMouvement.BOUTEILLE);
+        }
 
         Bouteille b = new Bouteille();
         b.setType(type);
-        b.setLitrage(new Litrage(litrageValeur));
+        b.setLitrage(litrage);
         b.setPrix(prix);
         return b;
     }
 
+    /**
+     * Fabrique {@code count} bouteilles identiques: le stock (ou la reservation) est preleve une seule
+     * fois pour {@code count * litrage}, d'ou un seul evenement STOCK_CHANGED pour tout le lot.
+     */
+    public List<Bouteille> createBouteilles(Type type, double litrageValeur, double prix, int count, Long reservationId) {
+        if (count < 1) throw new IllegalArgumentException("count doit etre positif");
+        Litrage litrage = new Litrage(litrageValeur);
+        prelever(type, Math.multiplyExact(litrage.millilitres(), (long) count), reservationId);
+        List<Bouteille> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Bouteille b = new Bouteille();
+            b.setType(type);
+            b.setLitrage(new Litrage(litrageValeur)); // un embeddable par entite
+            b.setPrix(prix);
+            out.add(b);
+        }
+        return out;
+    }
+
+    /**
+     * Fabrique un lot de {@code count} bouteilles represente par une seule ligne: meme prelevement
+     * unique que {@link #createBouteilles}, sans entite par bouteille.
+     */
+    public LotBouteilles createLot(Type type, double litrageValeur, double prix, int count, Long reservationId) {
+        if (count < 1) throw new IllegalArgumentException("count doit etre positif");
+        Litrage litrage = new Litrage(litrageValeur);
+        prelever(type, Math.multiplyExact(litrage.millilitres(), (long) count), reservationId);
+        return new LotBouteilles(type, litrage, prix, count, reservationId, Instant.now());
+    }
+
+    /** Emballe {@code cartons} cartons depuis un lot, selon le ratio de son litrage; le lot est decremente. */
+    public List<Boite> createBoites(LotBouteilles lot, int cartons, double prix) {
+        if (cartons < 1) throw new IllegalArgumentException("cartons doit etre positif");
+        int ratio = ratioParLitrage(lot.getLitrage().getValue());
+        lot.emballer(Math.multiplyExact(ratio, cartons));
+        List<Boite> out = new ArrayList<>(cartons);
+        for (int i = 0; i < cartons; i++) {
+            Boite boite = new Boite();
+            boite.setLot(lot);
+            boite.setBouteilles(new ArrayList<>());
+            boite.setQuantite(ratio);
+            boite.setPrix(prix);
+            boite.setType(lot.getType());
+            out.add(boite);
+        }
+        return out;
+    }
+
+    private void prelever(Type type, long totalMl, Long reservationId) {
+        if (reservationId != null) {
+            reservationService.consommer(reservationId, type, totalMl);
+        } else {
+            stockBruteService.diminuerMl(type, totalMl, MotifMouvement.BOUTEILLE);
+        }
+    }
+
     public Boite createBoite(List<Bouteille> list, int quantite, double prix) {
         if (list == null || list.isEmpty()) {
             throw new IllegalArgumentException("boite sans bouteilles");
@@ -58,15 +117,22 @@ public class ProduitFactory {
         if (quantite != 0 && quantite != expected) {
             throw new IllegalArgumentException("quantite incoherente avec le ratio: " + expected);
         }
+        List<Long> ids = new ArrayList<>(list.size());
+        for (Bouteille b : list) {
+            if (b.getId() == null) throw new IllegalArgumentException("bouteille sans id");
+            ids.add(b.getId());
+        }
         Boite boite = new Boite();
-        boite.setBouteilles(list);
+        boite.setBouteilles(new ArrayList<>()); // plus de ligne boite_bouteilles: composition en plages
+        boite.setComposition(PlagesIds.encoder(ids));
         boite.setQuantite(expected);
         boite.setPrix(prix);
         boite.setType(type);
         return boite;
     }
 
-    private int ratioParLitrage(double litrage) {
+    /** Nombre de bouteilles par carton pour un litrage donne. */
+    public int ratioParLitrage(double litrage) {
         if (Double.compare(litrage, 1.0) == 0) return 15;
         if (Double.compare(litrage, 0.5) == 0) return 30;
         if (Double.compare(litrage, 2.0) == 0) return 8;
@@ -11,45 +11,57 @@ import java.util.Objects;
 @Entity
 public class StockBrute {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_brute_seq")
+    @SequenceGenerator(name = "stock_brute_seq", sequenceName = "stock_brute_seq", allocationSize = 50)
     private Long id;
 
+    // site / entrepot: une ligne par site, les lignes de production d'un site ne contendent pas avec celles d'un autre
+    @Column(unique = true, length = 50)
+    private String site;
+
+    // millilitres en memoire, litres en base (schema inchange)
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "stock_brut_quantites", joinColumns = @JoinColumn(name = "stock_brut_id"))
     @MapKeyEnumerated(EnumType.STRING)
+    @MapKeyColumn(name = "stock_key") // nom historique, utilise par les mises a jour SQL de StockBruteRepository
     @Column(name = "quantite")
-    private Map<Type, BigDecimal> stock;
+    @Convert(converter = MillilitresConverter.class)
+    private Map<Type, Long> stock;
 
     public StockBrute() {
         this.stock = new EnumMap<>(Type.class);
-        for (Type t : Type.values()) { this.stock.put(t, BigDecimal.ZERO); }
+        for (Type t : Type.values()) { this.stock.put(t, 0L); }
     }
 
     @PrePersist
     public void prePersist() {
         if (stock == null) {
             stock = new EnumMap<>(Type.class);
-            for (Type t : Type.values()) { stock.put(t, BigDecimal.ZERO); }
+            for (Type t : Type.values()) { stock.put(t, 0L); }
         }
     }
 
     public Long getId() { return id; }
+    public String getSite() { return site; }
+
+    public long quantiteMl(Type type) { return stock.getOrDefault(type, 0L); }
 
-    public BigDecimal quantite(Type type) { return stock.getOrDefault(type, BigDecimal.ZERO); }
+    public BigDecimal quantite(Type type) { return MillilitresConverter.versLitres(quantiteMl(type)); }
 
     public void augmenterQuantite(Type type, BigDecimal qte) {
         Objects.requireNonNull(type, "type null");
         Objects.requireNonNull(qte, "qte null");
         if (qte.signum() < 0) throw new IllegalArgumentException("qte negative");
-        stock.put(type, quantite(type).add(qte));
+        stock.put(type, quantiteMl(type) + MillilitresConverter.versMl(qte));
     }
 
     public void diminuerQuantite(Type type, BigDecimal qte) {
         Objects.requireNonNull(type, "type null");
         Objects.requireNonNull(qte, "qte null");
         if (qte.signum() < 0) throw new IllegalArgumentException("qte negative");
-        var actuelle = quantite(type);
-        if (actuelle.compareTo(qte) < 0) throw new IllegalArgumentException("stock insuffisant");
-        stock.put(type, actuelle.subtract(qte));
+        long ml = MillilitresConverter.versMl(qte);
+        long actuelle = quantiteMl(type);
+        if (actuelle < ml) throw new IllegalArgumentException("stock insuffisant");
+        stock.put(type, actuelle - ml);
     }
 }
@@ -0,0 +1,59 @@
+package com.jit.agentInterface.model;
+
+import com.jit.agentInterface.enums.MotifMouvement;
+import com.jit.agentInterface.enums.Type;
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/** Ligne du journal des mouvements de stock brut. Jamais modifiee ni supprimee. */
+@Entity
+@Table(name = "stock_mouvement", indexes = {
+        @Index(name = "idx_stock_mouvement_site_type_created_at", columnList = "site, type, created_at"),
+        @Index(name = "idx_stock_mouvement_created_at", columnList = "created_at")
+})
+public class StockMouvement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 50)
+    private String site;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Type type;
+
+    @Column(nullable = false)
+    private BigDecimal delta; // positif pour une entree, negatif pour une sortie
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private MotifMouvement motif;
+
+    @Column(nullable = false, length = 100)
+    private String acteur;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public StockMouvement() {}
+
+    public StockMouvement(String site, Type type, BigDecimal delta, MotifMouvement motif, String acteur, Instant createdAt) {
+        this.site = site;
+        this.type = type;
+        this.delta = delta;
+        this.motif = motif;
+        this.acteur = acteur;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() { return id; }
+    public String getSite() { return site; }
+    public Type getType() { return type; }
+    public BigDecimal getDelta() { return delta; }
+    public MotifMouvement getMotif() { return motif; }
+    public String getActeur() { return acteur; }
+    public Instant getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,78 @@
+package com.jit.agentInterface.model;
+
+import com.jit.agentInterface.enums.ReservationStatus;
+import com.jit.agentInterface.enums.Type;
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Quantite de stock brut mise de cote pour un ordre de production. Le stock global est diminue a la
+ * reservation; la production consomme ensuite la reservation sans toucher la ligne de stock du site.
+ */
+@Entity
+@Table(name = "stock_reservation", indexes = @Index(name = "idx_stock_reservation_expiry", columnList = "status, expires_at"))
+public class StockReservation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String site;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Type type;
+
+    // millilitres en memoire, litres en base
+    @Convert(converter = MillilitresConverter.class)
+    @Column(nullable = false)
+    private Long quantite;
+
+    @Convert(converter = MillilitresConverter.class)
+    @Column(nullable = false)
+    private Long consomme = 0L;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ReservationStatus status = ReservationStatus.ACTIVE;
+
+    @Column(length = 100)
+    private String reference; // ordre de production
+
+    @Column(nullable = false, length = 100)
+    private String acteur;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public StockReservation() {}
+
+    public StockReservation(String site, Type type, long quantiteMl, String reference, String acteur, Instant createdAt, Instant expiresAt) {
+        this.site = site;
+        this.type = type;
+        this.quantite = quantiteMl;
+        this.reference = reference;
+        this.acteur = acteur;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public Long getId() { return id; }
+    public String getSite() { return site; }
+    public Type getType() { return type; }
+    public Long getQuantite() { return quantite; }
+    public Long getConsomme() { return consomme; }
+    public ReservationStatus getStatus() { return status; }
+    public String getReference() { return reference; }
+    public String getActeur() { return acteur; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+
+    public long restantMl() { return quantite - consomme; }
+
+    public void cloturer(ReservationStatus status) { this.status = status; }
+}
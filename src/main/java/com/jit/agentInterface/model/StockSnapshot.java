@@ -0,0 +1,52 @@
+package com.jit.agentInterface.model;
+
+import com.jit.agentInterface.enums.Type;
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Niveau d'un type de stock brut apres application de tous les mouvements d'identifiant
+ * inferieur ou egal a {@code dernierMouvementId}.
+ */
+@Entity
+@Table(name = "stock_snapshot", indexes = @Index(name = "idx_stock_snapshot_type", columnList = "site, type, dernier_mouvement_id"))
+public class StockSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 50)
+    private String site;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Type type;
+
+    @Column(nullable = false)
+    private BigDecimal quantite;
+
+    @Column(name = "dernier_mouvement_id", nullable = false)
+    private Long dernierMouvementId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public StockSnapshot() {}
+
+    public StockSnapshot(String site, Type type, BigDecimal quantite, Long dernierMouvementId, Instant createdAt) {
+        this.site = site;
+        this.type = type;
+        this.quantite = quantite;
+        this.dernierMouvementId = dernierMouvementId;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() { return id; }
+    public String getSite() { return site; }
+    public Type getType() { return type; }
+    public BigDecimal getQuantite() { return quantite; }
+    public Long getDernierMouvementId() { return dernierMouvementId; }
+    public Instant getCreatedAt() { return createdAt; }
+}
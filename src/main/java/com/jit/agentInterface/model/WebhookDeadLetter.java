@@ -0,0 +1,95 @@
+package com.jit.agentInterface.model;
+
+import com.jit.agentInterface.enums.EventType;
+import com.jit.agentInterface.enums.WebhookDeliveryStatus;
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "webhook_dead_letter", indexes = @Index(name = "idx_webhook_dead_letter_due", columnList = "status, next_attempt_at"))
+public class WebhookDeadLetter {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long subscriptionId;
+
+    @Column(nullable = false, length = 500)
+    private String targetUrl;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 50)
+    private EventType eventType;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String body; // enveloppe JSON telle qu'envoyee
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private WebhookDeliveryStatus status = WebhookDeliveryStatus.RETRYING;
+
+    private int attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt;
+
+    @Column(nullable = false)
+    private Instant createdAt = Instant.now();
+
+    @Column(name = "replayed_at")
+    private Instant replayedAt; // dernier rejeu manuel: l'age maximal se mesure depuis cette date
+
+    public WebhookDeadLetter() {}
+
+    public WebhookDeadLetter(WebhookSubscription sub, EventType eventType, String body) {
+        this.subscriptionId = sub.getId();
+        this.targetUrl = sub.getTargetUrl();
+        this.eventType = eventType;
+        this.body = body;
+    }
+
+    // Métier
+    public void echec(String erreur, Instant prochaineTentative, boolean compteTentative) {
+        if (compteTentative) attempts++;
+        lastError = erreur == null ? null : erreur.substring(0, Math.min(erreur.length(), 1000));
+        nextAttemptAt = prochaineTentative;
+    }
+
+    // Reservation pour une tentative en cours: la ligne n'est plus echue avant cette date
+    public void reclamer(Instant jusqua) {
+        nextAttemptAt = jusqua;
+    }
+
+    public void abandonner() {
+        status = WebhookDeliveryStatus.DEAD;
+        nextAttemptAt = null;
+    }
+
+    public void rejouer() {
+        status = WebhookDeliveryStatus.RETRYING;
+        attempts = 0;
+        replayedAt = Instant.now();
+        nextAttemptAt = replayedAt;
+    }
+
+    /** Debut de la fenetre de nouvelles tentatives: creation, ou dernier rejeu manuel. */
+    public Instant debutTentatives() {
+        return replayedAt != null ? replayedAt : createdAt;
+    }
+
+    public Long getId() { return id; }
+    public Long getSubscriptionId() { return subscriptionId; }
+    public String getTargetUrl() { return targetUrl; }
+    public EventType getEventType() { return eventType; }
+    public String getBody() { return body; }
+    public WebhookDeliveryStatus getStatus() { return status; }
+    public int getAttempts() { return attempts; }
+    public String getLastError() { return lastError; }
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getReplayedAt() { return replayedAt; }
+}
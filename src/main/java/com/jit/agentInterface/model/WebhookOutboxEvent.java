@@ -0,0 +1,61 @@
+package com.jit.agentInterface.model;
+
+import com.jit.agentInterface.enums.EventType;
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Entity
+@Table(name = "webhook_outbox")
+public class WebhookOutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 50)
+    private EventType eventType;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload; // JSON du payload, serialise au moment de la publication
+
+    @Column(nullable = false)
+    private Instant createdAt = Instant.now();
+
+    // reservation de la ligne par un relais: livree hors transaction, reprise par un autre noeud a expiration
+    @Column(name = "claimed_until")
+    private Instant claimedUntil;
+
+    // souscriptions deja servies, separees par des virgules: une relivraison ne concerne que les autres
+    @Column(name = "delivered_to", columnDefinition = "text")
+    private String deliveredTo;
+
+    public WebhookOutboxEvent() {}
+
+    public WebhookOutboxEvent(EventType eventType, String payload) {
+        this.eventType = eventType;
+        this.payload = payload;
+    }
+
+    public Long getId() { return id; }
+    public EventType getEventType() { return eventType; }
+    public String getPayload() { return payload; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getClaimedUntil() { return claimedUntil; }
+
+    // Métier
+    public void reclamer(Instant jusqua) { this.claimedUntil = jusqua; }
+
+    public Set<Long> souscriptionsServies() {
+        if (deliveredTo == null || deliveredTo.isEmpty()) return new HashSet<>();
+        return Arrays.stream(deliveredTo.split(",")).map(Long::valueOf).collect(Collectors.toCollection(HashSet::new));
+    }
+
+    public static String encoderServies(Set<Long> ids) {
+        return ids.stream().sorted().map(String::valueOf).collect(Collectors.joining(","));
+    }
+}
@@ -9,7 +9,8 @@ import java.util.Set;
 @Entity
 public class WebhookSubscription {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "webhook_subscription_seq")
+    @SequenceGenerator(name = "webhook_subscription_seq", sequenceName = "webhook_subscription_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true, length = 500)
@@ -19,6 +20,13 @@ public class WebhookSubscription {
 
     private Instant createdAt = Instant.now();
 
+    // Fenetre de regroupement des STOCK_CHANGED en ms (null ou 0 = pas de regroupement)
+    private Integer coalesceWindowMs;
+
+    // Expression de filtre sur le payload (voir WebhookFilter), null = aucun filtre
+    @Column(length = 500)
+    private String filterExpression;
+
     @ElementCollection(fetch = FetchType.EAGER)
     @CollectionTable(name = "webhook_subscription_events", joinColumns = @JoinColumn(name = "subscription_id"))
     @Enumerated(EnumType.STRING)
@@ -32,6 +40,10 @@ public class WebhookSubscription {
     public void setActive(boolean active) { this.active = active; }
     public Instant getCreatedAt() { return createdAt; }
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public int getCoalesceWindowMs() { return coalesceWindowMs == null ? 0 : coalesceWindowMs; }
+    public void setCoalesceWindowMs(Integer coalesceWindowMs) { this.coalesceWindowMs = coalesceWindowMs; }
+    public String getFilterExpression() { return filterExpression; }
+    public void setFilterExpression(String filterExpression) { this.filterExpression = filterExpression; }
     public Set<EventType> getEventTypes() { return eventTypes; }
     public void setEventTypes(Set<EventType> eventTypes) { this.eventTypes = eventTypes; }
 }
@@ -2,6 +2,13 @@ package com.jit.agentInterface.repository;
 
 import com.jit.agentInterface.model.Boite;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface BoiteRepository extends JpaRepository<Boite, Long> {}
+import java.util.List;
 
+public interface BoiteRepository extends JpaRepository<Boite, Long> {
+    // cartons anterieurs a l'encodage en plages: composition lue dans la table de jointure
+    @Query(value = "SELECT bouteille_id FROM boite_bouteilles WHERE boite_id = :id ORDER BY bouteille_id", nativeQuery = true)
+    List<Long> bouteillesLiees(@Param("id") Long boiteId);
+}
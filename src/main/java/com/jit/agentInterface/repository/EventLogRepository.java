@@ -0,0 +1,43 @@
+package com.jit.agentInterface.repository;
+
+import com.jit.agentInterface.enums.EventType;
+import com.jit.agentInterface.model.EventLogEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface EventLogRepository extends JpaRepository<EventLogEntry, Long> {
+    List<EventLogEntry> findByLogOffsetGreaterThanOrderByLogOffsetAsc(Long after, Pageable page);
+    List<EventLogEntry> findByLogOffsetGreaterThanAndEventTypeInOrderByLogOffsetAsc(Long after, Collection<EventType> types, Pageable page);
+
+    // Un seul sequenceur a la fois, tous noeuds confondus; relache au commit
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:cle)", nativeQuery = true)
+    boolean verrouillerSequenceur(@Param("cle") long cle);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM event_log WHERE log_offset IS NOT NULL)", nativeQuery = true)
+    boolean offsetsAttribues();
+
+    // Migration: les lignes anterieures aux offsets gardent leur id comme offset, les lecteurs existants continuent
+    @Modifying
+    @Query(value = "UPDATE event_log SET log_offset = id WHERE log_offset IS NULL", nativeQuery = true)
+    int reprendreIdsCommeOffsets();
+
+    // Numerote, dans l'ordre d'insertion, les lignes validees qui n'ont pas encore d'offset
+    @Modifying
+    @Query(value = "UPDATE event_log e SET log_offset = base.m + n.rang "
+            + "FROM (SELECT id, row_number() OVER (ORDER BY id) AS rang FROM "
+            + "      (SELECT id FROM event_log WHERE log_offset IS NULL ORDER BY id LIMIT :limit) a) n, "
+            + "     (SELECT COALESCE(MAX(log_offset), 0) AS m FROM event_log) base "
+            + "WHERE e.id = n.id", nativeQuery = true)
+    int attribuerOffsets(@Param("limit") int limit);
+
+    @Modifying
+    @Query("delete from EventLogEntry e where e.createdAt < :before")
+    int deleteOlderThan(@Param("before") Instant before);
+}
@@ -0,0 +1,16 @@
+package com.jit.agentInterface.repository;
+
+import com.jit.agentInterface.model.LotBouteilles;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface LotBouteillesRepository extends JpaRepository<LotBouteilles, Long> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from LotBouteilles l where l.id = :id")
+    Optional<LotBouteilles> verrouiller(@Param("id") Long id);
+}
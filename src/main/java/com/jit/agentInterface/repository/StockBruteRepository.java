@@ -2,6 +2,66 @@ package com.jit.agentInterface.repository;
 
 import com.jit.agentInterface.model.StockBrute;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface StockBruteRepository extends JpaRepository<StockBrute, Long> {}
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
 
+public interface StockBruteRepository extends JpaRepository<StockBrute, Long> {
+    // Une ligne de stock brut par site
+    Optional<StockBrute> findBySite(String site);
+
+    @Query("select s.id from StockBrute s where s.site = :site")
+    Optional<Long> findIdBySite(@Param("site") String site);
+
+    /** Identifiant de la ligne du site, creee au besoin. La ligne historique sans site revient au site par defaut. */
+    default Long idDuSite(String site, boolean siteParDefaut) {
+        return findIdBySite(site).orElseGet(() -> {
+            if (siteParDefaut) revendiquerLigneSansSite(site);
+            creerSite(site);
+            return findIdBySite(site).orElseThrow();
+        });
+    }
+
+    @Modifying
+    @Query(value = "UPDATE stock_brute SET site = :site WHERE id = (SELECT min(id) FROM stock_brute WHERE site IS NULL)", nativeQuery = true)
+    int revendiquerLigneSansSite(@Param("site") String site);
+
+    @Modifying
+    // nextval hors optimiseur Hibernate: la valeur obtenue est la borne haute d'un bloc reserve a cet appel
+    @Query(value = "INSERT INTO stock_brute (id, site) VALUES (nextval('stock_brute_seq'), :site) ON CONFLICT (site) DO NOTHING", nativeQuery = true)
+    int creerSite(@Param("site") String site);
+
+    // Agregat inter-sites en une requete, sans charger les lignes
+    @Query(value = "SELECT stock_key, SUM(quantite) FROM stock_brut_quantites GROUP BY stock_key", nativeQuery = true)
+    List<Object[]> totauxParType();
+
+    @Query(value = "SELECT q.stock_key, SUM(q.quantite) FROM stock_brut_quantites q JOIN stock_brute s ON s.id = q.stock_brut_id "
+            + "WHERE s.site IS DISTINCT FROM :site GROUP BY q.stock_key", nativeQuery = true)
+    List<Object[]> totauxParTypeHorsSite(@Param("site") String site);
+
+    // Mouvements atomiques en une instruction: pas de lecture-modification-ecriture cote Java
+
+    @Modifying
+    @Query(value = "UPDATE stock_brut_quantites SET quantite = quantite - :qte "
+            + "WHERE stock_brut_id = :id AND stock_key = :type AND quantite >= :qte", nativeQuery = true)
+    int diminuerSiDisponible(@Param("id") Long stockId, @Param("type") String type, @Param("qte") BigDecimal quantite);
+
+    @Modifying
+    @Query(value = "INSERT INTO stock_brut_quantites (stock_brut_id, stock_key, quantite) VALUES (:id, :type, :qte) "
+            + "ON CONFLICT (stock_brut_id, stock_key) DO UPDATE SET quantite = stock_brut_quantites.quantite + EXCLUDED.quantite", nativeQuery = true)
+    int augmenter(@Param("id") Long stockId, @Param("type") String type, @Param("qte") BigDecimal quantite);
+
+    @Query(value = "SELECT quantite FROM stock_brut_quantites WHERE stock_brut_id = :id AND stock_key = :type", nativeQuery = true)
+    Optional<BigDecimal> quantite(@Param("id") Long stockId, @Param("type") String type);
+
+    // Verrouille la ligne de stock et ses quantites: attend la fin des mouvements en cours et bloque les suivants
+    @Query(value = "SELECT id FROM stock_brute WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> verrouiller(@Param("id") Long stockId);
+
+    @Query(value = "SELECT stock_key, quantite FROM stock_brut_quantites WHERE stock_brut_id = :id FOR UPDATE", nativeQuery = true)
+    List<Object[]> verrouillerQuantites(@Param("id") Long stockId);
+}
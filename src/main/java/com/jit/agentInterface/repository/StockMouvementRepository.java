@@ -0,0 +1,29 @@
+package com.jit.agentInterface.repository;
+
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.model.StockMouvement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+public interface StockMouvementRepository extends JpaRepository<StockMouvement, Long> {
+    List<StockMouvement> findBySiteAndCreatedAtBetweenOrderByIdDesc(String site, Instant from, Instant to, Pageable page);
+    List<StockMouvement> findBySiteAndTypeAndCreatedAtBetweenOrderByIdDesc(String site, Type type, Instant from, Instant to, Pageable page);
+
+    boolean existsByActeur(String acteur);
+
+    @Query("select coalesce(max(m.id), 0) from StockMouvement m")
+    long maxId();
+
+    // Queue du journal a rejouer par-dessus un snapshot
+    @Query("select coalesce(sum(m.delta), 0) from StockMouvement m where m.site = :site and m.type = :type and m.id > :after and m.id <= :upTo")
+    BigDecimal sommeDeltas(@Param("site") String site, @Param("type") Type type, @Param("after") long after, @Param("upTo") long upTo);
+
+    @Query("select coalesce(sum(m.delta), 0) from StockMouvement m where m.site = :site and m.type = :type and m.id > :after")
+    BigDecimal sommeDeltasApres(@Param("site") String site, @Param("type") Type type, @Param("after") long after);
+}
@@ -0,0 +1,34 @@
+package com.jit.agentInterface.repository;
+
+import com.jit.agentInterface.enums.ReservationStatus;
+import com.jit.agentInterface.model.StockReservation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+    List<StockReservation> findByStatusOrderByIdDesc(ReservationStatus status);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from StockReservation r where r.id = :id")
+    Optional<StockReservation> verrouiller(@Param("id") Long id);
+
+    // Consommation conditionnelle: seule la ligne de la reservation est verrouillee, pas la ligne de stock du site
+    @Modifying
+    @Query(value = "UPDATE stock_reservation SET consomme = consomme + :qte, "
+            + "status = CASE WHEN consomme + :qte >= quantite THEN 'CONSOMMEE' ELSE status END "
+            + "WHERE id = :id AND status = 'ACTIVE' AND expires_at > :now AND quantite - consomme >= :qte", nativeQuery = true)
+    int consommer(@Param("id") Long id, @Param("qte") BigDecimal quantite, @Param("now") Instant now);
+
+    @Query(value = "SELECT * FROM stock_reservation WHERE status = 'ACTIVE' AND expires_at <= :now "
+            + "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<StockReservation> verrouillerExpirees(@Param("now") Instant now, @Param("limit") int limit);
+}
@@ -0,0 +1,11 @@
+package com.jit.agentInterface.repository;
+
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.model.StockSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, Long> {
+    Optional<StockSnapshot> findFirstBySiteAndTypeOrderByDernierMouvementIdDesc(String site, Type type);
+}
@@ -0,0 +1,18 @@
+package com.jit.agentInterface.repository;
+
+import com.jit.agentInterface.enums.WebhookDeliveryStatus;
+import com.jit.agentInterface.model.WebhookDeadLetter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface WebhookDeadLetterRepository extends JpaRepository<WebhookDeadLetter, Long> {
+    List<WebhookDeadLetter> findByStatusOrderByIdDesc(WebhookDeliveryStatus status);
+
+    @Query(value = "SELECT * FROM webhook_dead_letter WHERE status = 'RETRYING' AND next_attempt_at <= :now "
+            + "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<WebhookDeadLetter> lockDueRetries(@Param("now") Instant now, @Param("limit") int limit);
+}
@@ -0,0 +1,23 @@
+package com.jit.agentInterface.repository;
+
+import com.jit.agentInterface.model.WebhookOutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface WebhookOutboxRepository extends JpaRepository<WebhookOutboxEvent, Long> {
+
+    // Verrouille le lot suivant non reserve (ou dont la reservation a expire); les lignes deja prises par un autre noeud sont ignorees
+    @Query(value = "SELECT * FROM webhook_outbox WHERE claimed_until IS NULL OR claimed_until < :now "
+            + "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<WebhookOutboxEvent> lockNextBatch(@Param("now") Instant now, @Param("limit") int limit);
+
+    // Livraison partielle: memorise les souscriptions servies et reporte la ligne
+    @Modifying
+    @Query(value = "UPDATE webhook_outbox SET delivered_to = :servies, claimed_until = :reprise WHERE id = :id", nativeQuery = true)
+    int reporter(@Param("id") Long id, @Param("servies") String servies, @Param("reprise") Instant reprise);
+}
@@ -37,6 +37,8 @@ public class SecurityConfig {
                 .requestMatchers("/api/auth/**", "/api/health", "/v3/api-docs/**", "/swagger-ui.html", "/swagger-ui/**").permitAll()
                 .requestMatchers("/api/admin/**").hasRole(Role.Admin.name())
                 .requestMatchers("/api/industrial/**").hasAnyRole(Role.Agent_industrielle.name(), Role.Admin.name())
+                .requestMatchers("/api/production/**").hasAnyRole(Role.Agent_industrielle.name(), Role.Admin.name())
+                .requestMatchers("/api/events/**").hasAnyRole(Role.Agent_industrielle.name(), Role.Admin.name())
                 .requestMatchers("/api/commercial/**").hasAnyRole(Role.Agent_commercial.name(), Role.Admin.name())
                 .requestMatchers("/api/seller/**").hasAnyRole(Role.Vendeur.name(), Role.Admin.name())
                 .anyRequest().authenticated()
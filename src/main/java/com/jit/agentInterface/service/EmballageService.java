@@ -8,6 +8,7 @@ import com.jit.agentInterface.repository.ChariotRepository;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -27,6 +28,7 @@ public class EmballageService {
         this.webhookDispatcherService = webhookDispatcherService;
     }
 
+    @Transactional
     public long addChariot() {
         chariotRepository.save(new Chariot());
         long count = chariotRepository.count();
@@ -34,6 +36,7 @@ public class EmballageService {
         return count;
     }
 
+    @Transactional
     public long removeChariotByIndex(int index) {
         List<Chariot> list = allChariotsOrdered();
         if (index < 0 || index >= list.size()) throw new ServiceException(HttpStatus.BAD_REQUEST, "chariot introuvable");
@@ -43,6 +46,7 @@ public class EmballageService {
         return count;
     }
 
+    @Transactional
     public int addBoiteToChariot(int index, Boite boite) {
         List<Chariot> list = allChariotsOrdered();
         if (index < 0 || index >= list.size()) throw new ServiceException(HttpStatus.BAD_REQUEST, "chariot introuvable");
@@ -56,6 +60,7 @@ public class EmballageService {
         return total;
     }
 
+    @Transactional
     public int removeBoiteFromChariot(int index, int indexBoite) {
         List<Chariot> list = allChariotsOrdered();
         if (index < 0 || index >= list.size()) throw new ServiceException(HttpStatus.BAD_REQUEST, "chariot introuvable");
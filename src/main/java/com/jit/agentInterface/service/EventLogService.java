@@ -0,0 +1,138 @@
+package com.jit.agentInterface.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jit.agentInterface.enums.EventType;
+import com.jit.agentInterface.model.EventLogEntry;
+import com.jit.agentInterface.model.WebhookSubscription;
+import com.jit.agentInterface.repository.EventLogRepository;
+import com.jit.agentInterface.repository.WebhookSubscriptionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lecture du journal d'evenements (table event_log, alimentee par {@link WebhookDispatcherService#publish}).
+ * L'identifiant est attribue a l'insertion: une transaction lente peut donc valider un identifiant
+ * inferieur a celui qu'un lecteur a deja depasse. L'offset est attribue apres coup par un sequenceur
+ * unique (verrou consultatif PostgreSQL, tous noeuds confondus), qui ne voit que les lignes validees et
+ * numerote a la suite du plus grand offset existant: un evenement devient lisible avec un offset superieur
+ * a tous ceux deja servis, quel que soit le moment de son commit. Un evenement sans offset n'est pas encore lu.
+ */
+@Service
+public class EventLogService {
+
+    private static final Logger log = LoggerFactory.getLogger(EventLogService.class);
+
+    public static final int MAX_LIMIT = 1000;
+
+    private static final long SEQUENCER_LOCK = 0x6576656e745f6cL; // cle du verrou consultatif du sequenceur
+
+    public record Entry(long offset, EventType eventType, Instant timestamp, JsonNode payload) {}
+    public record ReplayResult(long queued, long lastOffset) {}
+
+    private final EventLogRepository repository;
+    private final WebhookSubscriptionRepository subscriptionRepository;
+    private final WebhookDispatcherService dispatcher;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final TransactionTemplate transactionTemplate;
+    private final int sequencerBatchSize;
+    private final Duration retention;
+
+    public EventLogService(EventLogRepository repository,
+                           WebhookSubscriptionRepository subscriptionRepository,
+                           WebhookDispatcherService dispatcher,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${events.log.sequencer-batch-size:1000}") int sequencerBatchSize,
+                           @Value("${events.log.retention-days:30}") long retentionDays) {
+        this.repository = repository;
+        this.subscriptionRepository = subscriptionRepository;
+        this.dispatcher = dispatcher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sequencerBatchSize = sequencerBatchSize;
+        this.retention = Duration.ofDays(retentionDays);
+    }
+
+    public List<Entry> read(long after, int limit, Set<EventType> types) {
+        if (limit < 1 || limit > MAX_LIMIT) throw new ServiceException(HttpStatus.BAD_REQUEST, "limit doit etre entre 1 et " + MAX_LIMIT);
+        PageRequest page = PageRequest.of(0, limit);
+        List<EventLogEntry> rows = types == null || types.isEmpty()
+                ? repository.findByLogOffsetGreaterThanOrderByLogOffsetAsc(after, page)
+                : repository.findByLogOffsetGreaterThanAndEventTypeInOrderByLogOffsetAsc(after, types, page);
+        List<Entry> out = new ArrayList<>(rows.size());
+        for (EventLogEntry e : rows) out.add(new Entry(e.getLogOffset(), e.getEventType(), e.getCreatedAt(), readPayload(e)));
+        return out;
+    }
+
+    /**
+     * Attribue les offsets des evenements valides. Le verrou est pris dans la transaction: deux passes ne
+     * se chevauchent jamais, et une passe ne commence qu'apres le commit de la precedente, donc ses offsets
+     * sont superieurs a tous ceux deja visibles.
+     */
+    @Scheduled(fixedDelayString = "${events.log.sequencer-interval-ms:200}")
+    public void sequencer() {
+        Integer numerotes;
+        do {
+            numerotes = transactionTemplate.execute(status -> {
+                if (!repository.verrouillerSequenceur(SEQUENCER_LOCK)) return 0; // un autre noeud numerote
+                if (!repository.offsetsAttribues()) return repository.reprendreIdsCommeOffsets();
+                return repository.attribuerOffsets(sequencerBatchSize);
+            });
+        } while (numerotes != null && numerotes == sequencerBatchSize);
+    }
+
+    /**
+     * Relivre a une souscription les evenements du journal d'offset superieur a {@code after}, en
+     * respectant ses types et son filtre. Le dernier offset lu permet d'enchainer les appels.
+     */
+    @Transactional(readOnly = true)
+    public ReplayResult replay(Long subscriptionId, long after, int limit) {
+        WebhookSubscription sub = subscriptionRepository.findById(subscriptionId)
+                .orElseThrow(() -> new ServiceException(HttpStatus.NOT_FOUND, "subscription introuvable"));
+        WebhookFilter filter;
+        try {
+            filter = WebhookFilter.compile(sub.getFilterExpression());
+        } catch (IllegalArgumentException e) {
+            throw new ServiceException(HttpStatus.CONFLICT, "filtre de la souscription invalide: " + e.getMessage());
+        }
+        long queued = 0;
+        long last = after;
+        for (Entry e : read(after, limit, sub.getEventTypes())) {
+            last = e.offset();
+            if (e.payload() == null || !filter.matches(e.payload())) continue;
+            dispatcher.redeliver(sub, e.eventType(), e.payload(), e.timestamp());
+            queued++;
+        }
+        return new ReplayResult(queued, last);
+    }
+
+    @Scheduled(cron = "${events.log.purge-cron:0 30 3 * * *}")
+    @Transactional
+    public void purge() {
+        int removed = repository.deleteOlderThan(Instant.now().minus(retention));
+        if (removed > 0) log.info("Event log purge: {} entries older than {} removed", removed, retention);
+    }
+
+    private JsonNode readPayload(EventLogEntry e) {
+        try {
+            return mapper.readTree(e.getPayload());
+        } catch (IOException ex) {
+            log.warn("Event log entry {} has an unreadable payload: {}", e.getId(), ex.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.jit.agentInterface.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.jit.agentInterface.enums.EventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diffusion Server-Sent Events des evenements publies, alternative au polling et aux webhooks.
+ * Chaque connexion dispose d'un tampon borne draine par un pool d'envoi partage; une connexion
+ * dont le tampon deborde (client trop lent) est fermee plutot que de ralentir les autres.
+ * Les evenements sont diffuses apres validation de la transaction qui les a produits, par le
+ * noeud qui les a produits.
+ */
+@Service
+public class EventStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(EventStreamService.class);
+
+    private record Frame(String id, String name, String data) {}
+
+    private static final Frame HEARTBEAT = new Frame(null, null, null);
+
+    private final class Connection {
+        final SseEmitter emitter;
+        final Set<EventType> types;
+        final BlockingQueue<Frame> buffer;
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        Connection(SseEmitter emitter, Set<EventType> types) {
+            this.emitter = emitter;
+            this.types = types;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        void offer(Frame frame) {
+            if (!buffer.offer(frame)) {
+                evicted.increment();
+                close();
+                emitter.completeWithError(new IOException("client trop lent, connexion fermee"));
+                return;
+            }
+            if (draining.compareAndSet(false, true)) senders.execute(this::drain);
+        }
+
+        private void drain() {
+            try {
+                Frame f;
+                while ((f = buffer.poll()) != null) {
+                    if (f == HEARTBEAT) emitter.send(SseEmitter.event().comment("ping"));
+                    else emitter.send(SseEmitter.event().id(f.id()).name(f.name()).data(f.data(), MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            if (!buffer.isEmpty() && draining.compareAndSet(false, true)) senders.execute(this::drain);
+        }
+
+        void close() {
+            connections.remove(this);
+        }
+    }
+
+    private final Set<Connection> connections = new CopyOnWriteArraySet<>();
+    private final ExecutorService senders;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Counter evicted;
+    private final int bufferSize;
+    private final int maxConnections;
+    private final long timeoutMs;
+
+    public EventStreamService(MeterRegistry meterRegistry,
+                              @Value("${events.stream.buffer-size:256}") int bufferSize,
+                              @Value("${events.stream.max-connections:500}") int maxConnections,
+                              @Value("${events.stream.timeout-ms:1800000}") long timeoutMs,
+                              @Value("${events.stream.sender-threads:4}") int senderThreads) {
+        this.bufferSize = bufferSize;
+        this.maxConnections = maxConnections;
+        this.timeoutMs = timeoutMs;
+        this.senders = Executors.newFixedThreadPool(senderThreads, WebhookDispatcherService.daemonThreads("event-stream-"));
+        this.evicted = meterRegistry.counter("events.stream.evicted");
+        Gauge.builder("events.stream.connections", connections, Set::size).register(meterRegistry);
+    }
+
+    /** @param types types d'evenements voulus, vide ou null = tous */
+    public SseEmitter subscribe(Set<EventType> types) {
+        if (connections.size() >= maxConnections) {
+            throw new ServiceException(HttpStatus.SERVICE_UNAVAILABLE, "trop de flux d'evenements ouverts");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Connection c = new Connection(emitter, types == null || types.isEmpty() ? EnumSet.allOf(EventType.class) : EnumSet.copyOf(types));
+        emitter.onCompletion(c::close);
+        emitter.onTimeout(c::close);
+        emitter.onError(e -> c.close());
+        connections.add(c);
+        return emitter;
+    }
+
+    public void broadcast(EventType type, Object payload, Instant timestamp) {
+        if (connections.isEmpty()) return;
+        Frame frame;
+        try {
+            frame = new Frame(Long.toString(sequence.incrementAndGet()), type.name(),
+                    new String(WebhookEnvelope.render(type, timestamp, payload), StandardCharsets.UTF_8));
+        } catch (JsonProcessingException e) {
+            log.warn("Event stream serialization failed for {} event: {}", type, e.getMessage());
+            return;
+        }
+        for (Connection c : connections) {
+            if (c.types.contains(type)) c.offer(frame);
+        }
+    }
+
+    // Maintient les connexions ouvertes a travers les proxys et detecte les clients partis
+    @Scheduled(fixedDelayString = "${events.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Connection c : connections) c.offer(HEARTBEAT);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        for (Connection c : connections) c.emitter.complete();
+        senders.shutdownNow();
+    }
+}
@@ -0,0 +1,39 @@
+package com.jit.agentInterface.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Hibernate cree une contrainte CHECK listant les valeurs de l'enum sur chaque colonne event_type, et
+ * ddl-auto=update ne la met jamais a jour: une base existante refuserait un nouveau type d'evenement.
+ * Au demarrage, ces contraintes sont supprimees; la valeur reste validee par l'enum cote application.
+ */
+@Component
+public class EventTypeCheckAligner {
+
+    private static final Logger log = LoggerFactory.getLogger(EventTypeCheckAligner.class);
+
+    private static final List<String> TABLES = List.of("webhook_outbox", "webhook_dead_letter", "event_log", "webhook_subscription_events");
+
+    private final JdbcTemplate jdbc;
+
+    // EntityManagerFactory: garantit que le schema (ddl-auto) est en place avant la suppression
+    public EventTypeCheckAligner(JdbcTemplate jdbc, EntityManagerFactory entityManagerFactory) {
+        this.jdbc = jdbc;
+    }
+
+    @PostConstruct
+    void aligner() {
+        for (String table : TABLES) {
+            if (!Boolean.TRUE.equals(jdbc.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table))) continue;
+            jdbc.execute("ALTER TABLE " + table + " DROP CONSTRAINT IF EXISTS " + table + "_event_type_check");
+            log.debug("Event type check constraint of {} dropped", table);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.jit.agentInterface.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Migration des identifiants IDENTITY vers des sequences (allocationSize 50, optimiseur pooled).
+ * Au demarrage, chaque sequence est avancee au-dela du plus grand identifiant existant de ses tables:
+ * les lignes creees avant la migration ne peuvent pas entrer en collision avec un bloc alloue.
+ * Une sequence deja en avance n'est jamais reculee; l'operation est idempotente.
+ */
+@Component
+public class IdSequenceAligner {
+
+    private static final Logger log = LoggerFactory.getLogger(IdSequenceAligner.class);
+
+    private record Alignement(String sequence, List<String> tables) {}
+
+    private static final List<Alignement> ALIGNEMENTS = List.of(
+            new Alignement("produit_seq", List.of("bouteille", "boite")), // sequence partagee par les sous-classes de Produit
+            new Alignement("chariot_seq", List.of("chariot")),
+            new Alignement("client_seq", List.of("client")),
+            new Alignement("users_seq", List.of("users")),
+            new Alignement("webhook_subscription_seq", List.of("webhook_subscription")),
+            new Alignement("stock_brute_seq", List.of("stock_brute"))
+    );
+
+    private final JdbcTemplate jdbc;
+
+    // EntityManagerFactory: garantit que le schema (ddl-auto) est en place avant l'alignement
+    public IdSequenceAligner(JdbcTemplate jdbc, EntityManagerFactory entityManagerFactory) {
+        this.jdbc = jdbc;
+    }
+
+    @PostConstruct
+    void aligner() {
+        for (Alignement a : ALIGNEMENTS) {
+            if (!existe(a.sequence()) || !a.tables().stream().allMatch(this::existe)) {
+                log.warn("Id sequence {} or one of its tables {} is missing, not aligned", a.sequence(), a.tables());
+                continue;
+            }
+            String max = a.tables().stream()
+                    .map(t -> "SELECT COALESCE(MAX(id), 0) AS m FROM " + t)
+                    .collect(Collectors.joining(" UNION ALL "));
+            Long valeur = jdbc.queryForObject("SELECT setval('" + a.sequence() + "', GREATEST((SELECT MAX(m) FROM (" + max + ") x), "
+                    + "(SELECT last_value FROM " + a.sequence() + ")))", Long.class);
+            log.debug("Id sequence {} aligned at {}", a.sequence(), valeur);
+        }
+    }
+
+    private boolean existe(String relation) {
+        return Boolean.TRUE.equals(jdbc.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, relation));
+    }
+}
@@ -3,13 +3,24 @@ package com.jit.agentInterface.service;
 import com.jit.agentInterface.enums.Type;
 import com.jit.agentInterface.model.Boite;
 import com.jit.agentInterface.model.Bouteille;
+import com.jit.agentInterface.model.LotBouteilles;
+import com.jit.agentInterface.model.PlagesIds;
 import com.jit.agentInterface.model.ProduitFactory;
 import com.jit.agentInterface.repository.BoiteRepository;
 import com.jit.agentInterface.repository.BouteilleRepository;
+import com.jit.agentInterface.repository.LotBouteillesRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class ProductService {
@@ -17,32 +28,139 @@ public class ProductService {
     private final ProduitFactory produitFactory;
     private final BouteilleRepository bouteilleRepository;
     private final BoiteRepository boiteRepository;
+    private final LotBouteillesRepository lotRepository;
+    private final int maxBatch;
+    private final int maxBoites;
 
     public ProductService(ProduitFactory produitFactory,
                           BouteilleRepository bouteilleRepository,
-                          BoiteRepository boiteRepository) {
+                          BoiteRepository boiteRepository,
+                          LotBouteillesRepository lotRepository,
+                          @Value("${production.batch.max-count:10000}") int maxBatch,
+                          @Value("${production.batch.max-boites:500}") int maxBoites) {
         this.produitFactory = produitFactory;
         this.bouteilleRepository = bouteilleRepository;
         this.boiteRepository = boiteRepository;
+        this.lotRepository = lotRepository;
+        this.maxBatch = maxBatch;
+        this.maxBoites = maxBoites;
     }
 
+    @Transactional
     public Bouteille createBouteille(Type type, double litrage, double prix) {
-        Bouteille created = produitFactory.createBouteille(type, litrage, prix);
+        return createBouteille(type, litrage, prix, null);
+    }
+
+    @Transactional
+    public Bouteille createBouteille(Type type, double litrage, double prix, Long reservationId) {
+        Bouteille created = produitFactory.createBouteille(type, litrage, prix, reservationId);
         return bouteilleRepository.save(created);
     }
 
+    /** Lot de bouteilles identiques: un prelevement de stock, un evenement, insertions groupees. */
+    @Transactional
+    public List<Bouteille> createBouteilles(Type type, double litrage, double prix, int count, Long reservationId) {
+        if (count > maxBatch) throw new IllegalArgumentException("au plus " + maxBatch + " bouteilles par lot");
+        return bouteilleRepository.saveAll(produitFactory.createBouteilles(type, litrage, prix, count, reservationId));
+    }
+
+    /** Lot de bouteilles: une seule ligne quel que soit le nombre de bouteilles. */
+    @Transactional
+    public LotBouteilles createLot(Type type, double litrage, double prix, int count, Long reservationId) {
+        return lotRepository.save(produitFactory.createLot(type, litrage, prix, count, reservationId));
+    }
+
+    public LotBouteilles getLot(Long id) {
+        return lotRepository.findById(id).orElseThrow(() -> new ServiceException(HttpStatus.NOT_FOUND, "lot introuvable"));
+    }
+
+    /** Emballe des cartons depuis un lot; le lot est verrouille le temps de decompter ses bouteilles. */
+    @Transactional
+    public List<Boite> createBoitesDepuisLot(Long lotId, int cartons, double prix) {
+        if (cartons > maxBoites) throw new IllegalArgumentException("au plus " + maxBoites + " boites par lot");
+        LotBouteilles lot = lotRepository.verrouiller(lotId).orElseThrow(() -> new ServiceException(HttpStatus.NOT_FOUND, "lot introuvable"));
+        return boiteRepository.saveAll(produitFactory.createBoites(lot, cartons, prix));
+    }
+
+    @Transactional
     public Boite createBoite(List<Bouteille> bouteilles, int quantite, double prix) {
-        // Ensure all bottles are managed
-        List<Bouteille> managed = new ArrayList<>();
+        if (bouteilles == null) throw new IllegalArgumentException("boite sans bouteilles");
+        List<Long> ids = new ArrayList<>(bouteilles.size());
         for (Bouteille b : bouteilles) {
-            if (b.getId() == null) {
-                managed.add(bouteilleRepository.save(b));
-            } else {
-                managed.add(bouteilleRepository.findById(b.getId()).orElseGet(() -> bouteilleRepository.save(b)));
-            }
+            if (b == null || b.getId() == null) throw new IllegalArgumentException("bouteille sans id: fabriquer la bouteille avant de l'emballer");
+            ids.add(b.getId());
         }
-        Boite boite = produitFactory.createBoite(managed, quantite, prix);
-        return boiteRepository.save(boite);
+        return createBoiteParIds(ids, quantite, prix);
     }
-}
 
+    @Transactional
+    public Boite createBoiteParIds(List<Long> bouteilleIds, int quantite, double prix) {
+        Map<Long, Bouteille> parId = resoudre(bouteilleIds);
+        return boiteRepository.save(produitFactory.createBoite(ordonner(bouteilleIds, parId), quantite, prix));
+    }
+
+    public record BoiteCommande(List<Long> bouteilleIds, int quantite, double prix) {}
+
+    /**
+     * Emballe plusieurs boites en une transaction: toutes les bouteilles sont chargees par une seule
+     * requete, chaque boite est validee en memoire, puis les boites sont inserees par lots. Les bouteilles
+     * d'une boite sont encodees en plages d'identifiants dans sa colonne {@code composition} (voir PlagesIds):
+     * aucune ligne de liaison n'est ecrite.
+     */
+    @Transactional
+    public List<Boite> createBoites(List<BoiteCommande> commandes) {
+        if (commandes == null || commandes.isEmpty()) throw new IllegalArgumentException("aucune boite");
+        if (commandes.size() > maxBoites) throw new IllegalArgumentException("au plus " + maxBoites + " boites par lot");
+        List<Long> tous = new ArrayList<>();
+        for (BoiteCommande c : commandes) {
+            if (c == null || c.bouteilleIds() == null || c.bouteilleIds().isEmpty()) throw new IllegalArgumentException("boite sans bouteilles");
+            tous.addAll(c.bouteilleIds());
+        }
+        Map<Long, Bouteille> parId = resoudre(tous); // rejette aussi une bouteille placee dans deux boites du lot
+        List<Boite> boites = new ArrayList<>(commandes.size());
+        for (BoiteCommande c : commandes) {
+            boites.add(produitFactory.createBoite(ordonner(c.bouteilleIds(), parId), c.quantite(), c.prix()));
+        }
+        return boiteRepository.saveAll(boites);
+    }
+
+    public record Composition(Long boiteId, Type type, int quantite, Long lotId, String plages, List<Long> bouteilleIds) {}
+
+    /** Composition d'un carton, decodee a la demande: lot, plages d'identifiants ou ancienne table de jointure. */
+    @Transactional(readOnly = true)
+    public Composition composition(Long boiteId) {
+        Boite b = boiteRepository.findById(boiteId).orElseThrow(() -> new ServiceException(HttpStatus.NOT_FOUND, "boite introuvable"));
+        List<Long> ids;
+        if (b.getComposition() != null) {
+            ids = Arrays.stream(PlagesIds.decoder(b.getComposition())).boxed().toList();
+        } else if (b.getLotId() != null) {
+            ids = List.of(); // bouteilles non materialisees
+        } else {
+            ids = boiteRepository.bouteillesLiees(boiteId);
+        }
+        String plages = b.getComposition() != null ? b.getComposition() : PlagesIds.encoder(ids);
+        return new Composition(b.getId(), b.getType(), b.getQuantite(), b.getLotId(), plages, ids);
+    }
+
+    // Une seule requete IN pour toutes les bouteilles; ids inconnus ou en double refuses
+    private Map<Long, Bouteille> resoudre(List<Long> ids) {
+        Set<Long> uniques = new HashSet<>(ids.size() * 2);
+        for (Long id : ids) {
+            if (id == null) throw new IllegalArgumentException("bouteille sans id");
+            if (!uniques.add(id)) throw new IllegalArgumentException("bouteille " + id + " en double");
+        }
+        Map<Long, Bouteille> parId = new HashMap<>(uniques.size() * 2);
+        for (Bouteille b : bouteilleRepository.findAllById(uniques)) parId.put(b.getId(), b);
+        if (parId.size() != uniques.size()) {
+            List<Long> inconnues = uniques.stream().filter(id -> !parId.containsKey(id)).sorted().limit(20).toList();
+            throw new ServiceException(HttpStatus.NOT_FOUND, "bouteilles introuvables: " + inconnues);
+        }
+        return parId;
+    }
+
+    private static List<Bouteille> ordonner(List<Long> ids, Map<Long, Bouteille> parId) {
+        List<Bouteille> out = new ArrayList<>(ids.size());
+        for (Long id : ids) out.add(parId.get(id));
+        return out;
+    }
+}
@@ -0,0 +1,255 @@
+package com.jit.agentInterface.service;
+
+import com.jit.agentInterface.enums.EventType;
+import com.jit.agentInterface.enums.ProductionRunStatus;
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.model.Boite;
+import com.jit.agentInterface.model.LotBouteilles;
+import com.jit.agentInterface.model.ProduitFactory;
+import com.jit.agentInterface.repository.BoiteRepository;
+import com.jit.agentInterface.repository.ChariotRepository;
+import com.jit.agentInterface.repository.LotBouteillesRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ordres de fabrication de bout en bout: prelevement du stock brut, fabrication des bouteilles,
+ * mise en carton selon le ratio du litrage et chargement sur un chariot, en une seule requete.
+ * Chaque tranche produit un {@link LotBouteilles}: les bouteilles ne sont pas materialisees une par une.
+ * L'ordre est execute en arriere-plan par tranches de cartons, une transaction par tranche: une
+ * tranche en echec est annulee entierement, les tranches deja validees restent produites et la
+ * progression indique ou l'ordre s'est arrete. Le suivi est conserve en memoire.
+ */
+@Service
+public class ProductionRunService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductionRunService.class);
+
+    /** Etat d'un ordre, mis a jour par le thread de production et lu par les requetes de suivi. */
+    public static final class Run {
+        private final long id;
+        private final Type type;
+        private final double litrage;
+        private final int cartons;
+        private final int bouteillesParCarton;
+        private final Long chariotId;
+        private final Long reservationId;
+        private final Instant createdAt;
+        private volatile ProductionRunStatus status = ProductionRunStatus.EN_ATTENTE;
+        private volatile int cartonsProduits;
+        private volatile int tranches;
+        private volatile String erreur;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile boolean annulationDemandee;
+
+        Run(long id, Type type, double litrage, int cartons, int bouteillesParCarton, Long chariotId, Long reservationId, Instant createdAt) {
+            this.id = id;
+            this.type = type;
+            this.litrage = litrage;
+            this.cartons = cartons;
+            this.bouteillesParCarton = bouteillesParCarton;
+            this.chariotId = chariotId;
+            this.reservationId = reservationId;
+            this.createdAt = createdAt;
+        }
+
+        public long getId() { return id; }
+        public Type getType() { return type; }
+        public double getLitrage() { return litrage; }
+        public int getCartons() { return cartons; }
+        public Long getChariotId() { return chariotId; }
+        public Long getReservationId() { return reservationId; }
+        public ProductionRunStatus getStatus() { return status; }
+        public int getCartonsProduits() { return cartonsProduits; }
+        public int getBouteillesProduites() { return cartonsProduits * bouteillesParCarton; }
+        public int getTranches() { return tranches; }
+        public double getProgression() { return cartons == 0 ? 1.0 : (double) cartonsProduits / cartons; }
+        public String getErreur() { return erreur; }
+        public Instant getCreatedAt() { return createdAt; }
+        public Instant getStartedAt() { return startedAt; }
+        public Instant getFinishedAt() { return finishedAt; }
+
+        boolean termine() {
+            return status != ProductionRunStatus.EN_ATTENTE && status != ProductionRunStatus.EN_COURS;
+        }
+    }
+
+    public record Commande(Type type, double litrage, int cartons, Long chariotId,
+                           double prixBouteille, double prixBoite, Long reservationId) {}
+
+    private final ProduitFactory produitFactory;
+    private final LotBouteillesRepository lotRepository;
+    private final BoiteRepository boiteRepository;
+    private final ChariotRepository chariotRepository;
+    private final WebhookDispatcherService webhookDispatcherService;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactionTemplate;
+    private final int cartonsParTranche;
+    private final int maxCartons;
+    private final int retention;
+    private final ThreadPoolExecutor workers;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Run> runs = new ConcurrentHashMap<>();
+
+    public ProductionRunService(ProduitFactory produitFactory,
+                                LotBouteillesRepository lotRepository,
+                                BoiteRepository boiteRepository,
+                                ChariotRepository chariotRepository,
+                                WebhookDispatcherService webhookDispatcherService,
+                                JdbcTemplate jdbc,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${production.run.chunk-cartons:20}") int cartonsParTranche,
+                                @Value("${production.run.max-cartons:100000}") int maxCartons,
+                                @Value("${production.run.workers:1}") int workerCount,
+                                @Value("${production.run.queue-capacity:16}") int queueCapacity,
+                                @Value("${production.run.retention:100}") int retention) {
+        this.produitFactory = produitFactory;
+        this.lotRepository = lotRepository;
+        this.boiteRepository = boiteRepository;
+        this.chariotRepository = chariotRepository;
+        this.webhookDispatcherService = webhookDispatcherService;
+        this.jdbc = jdbc;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cartonsParTranche = Math.max(1, cartonsParTranche);
+        this.maxCartons = maxCartons;
+        this.retention = Math.max(1, retention);
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), WebhookDispatcherService.daemonThreads("production-run-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public Run lancer(Commande c) {
+        if (c.type() == null) throw new IllegalArgumentException("type requis");
+        if (c.cartons() < 1) throw new IllegalArgumentException("cartons doit etre positif");
+        if (c.cartons() > maxCartons) throw new IllegalArgumentException("au plus " + maxCartons + " cartons par ordre");
+        int ratio = produitFactory.ratioParLitrage(c.litrage());
+        if (c.chariotId() != null && !chariotRepository.existsById(c.chariotId())) {
+            throw new ServiceException(HttpStatus.NOT_FOUND, "chariot introuvable");
+        }
+        Run run = new Run(sequence.incrementAndGet(), c.type(), c.litrage(), c.cartons(), ratio,
+                c.chariotId(), c.reservationId(), Instant.now());
+        runs.put(run.id, run);
+        try {
+            // le contexte de securite du demandeur suit l'ordre: ses mouvements de stock sont journalises a son nom
+            workers.execute(new DelegatingSecurityContextRunnable(() -> executer(run, c)));
+        } catch (RejectedExecutionException e) {
+            runs.remove(run.id);
+            throw new ServiceException(HttpStatus.TOO_MANY_REQUESTS, "trop d'ordres de fabrication en attente");
+        }
+        purger();
+        return run;
+    }
+
+    public Run get(long id) {
+        Run run = runs.get(id);
+        if (run == null) throw new ServiceException(HttpStatus.NOT_FOUND, "ordre de fabrication introuvable");
+        return run;
+    }
+
+    public List<Run> list() {
+        List<Run> out = new ArrayList<>(runs.values());
+        out.sort(Comparator.comparingLong(Run::getId).reversed());
+        return out;
+    }
+
+    /** Demande l'arret de l'ordre: la tranche en cours est terminee, les suivantes ne sont pas lancees. */
+    public Run annuler(long id) {
+        Run run = get(id);
+        if (run.termine()) throw new ServiceException(HttpStatus.CONFLICT, "ordre de fabrication deja " + run.status);
+        run.annulationDemandee = true;
+        return run;
+    }
+
+    @PreDestroy
+    void arreter() {
+        workers.shutdownNow();
+    }
+
+    private void executer(Run run, Commande c) {
+        run.startedAt = Instant.now();
+        run.status = ProductionRunStatus.EN_COURS;
+        try {
+            while (run.cartonsProduits < run.cartons) {
+                if (run.annulationDemandee || Thread.currentThread().isInterrupted()) {
+                    run.status = ProductionRunStatus.ANNULE;
+                    break;
+                }
+                int n = Math.min(cartonsParTranche, run.cartons - run.cartonsProduits);
+                transactionTemplate.executeWithoutResult(tx -> tranche(run, c, n));
+                run.cartonsProduits += n;
+                run.tranches++;
+            }
+            if (run.status == ProductionRunStatus.EN_COURS) run.status = ProductionRunStatus.TERMINE;
+        } catch (RuntimeException e) {
+            log.warn("ordre de fabrication {} arrete apres {} cartons: {}", run.id, run.cartonsProduits, e.getMessage());
+            run.erreur = e.getMessage();
+            run.status = ProductionRunStatus.ECHEC;
+        } finally {
+            run.finishedAt = Instant.now();
+        }
+        publier(run);
+    }
+
+    // Une tranche: un prelevement de stock, un lot de bouteilles, insertions groupees des cartons et des liens chariot
+    private void tranche(Run run, Commande c, int cartons) {
+        LotBouteilles lot = lotRepository.save(
+                produitFactory.createLot(c.type(), c.litrage(), c.prixBouteille(), cartons * run.bouteillesParCarton, c.reservationId()));
+        List<Boite> boites = produitFactory.createBoites(lot, cartons, c.prixBoite());
+        boites = boiteRepository.saveAllAndFlush(boites);
+        if (c.chariotId() != null) {
+            // insertion directe des liens: evite de charger toute la collection du chariot a chaque tranche
+            List<Object[]> liens = new ArrayList<>(boites.size());
+            for (Boite b : boites) liens.add(new Object[]{c.chariotId(), b.getId()});
+            jdbc.batchUpdate("INSERT INTO chariot_boites (chariot_id, boite_id) VALUES (?, ?)", liens);
+        }
+    }
+
+    private void publier(Run run) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("status", run.status.name());
+        payload.put("runId", run.id);
+        payload.put("type", run.type.name());
+        payload.put("litrage", run.litrage);
+        payload.put("cartons", run.cartonsProduits);
+        payload.put("bouteilles", run.getBouteillesProduites());
+        if (run.chariotId != null) payload.put("chariotId", run.chariotId);
+        try {
+            transactionTemplate.executeWithoutResult(tx -> webhookDispatcherService.publish(EventType.PRODUCTION_RUN_FINISHED, payload));
+        } catch (RuntimeException e) {
+            log.warn("evenement de fin de l'ordre {} non publie: {}", run.id, e.getMessage());
+        }
+    }
+
+    // Ne garde que les ordres les plus recents; ceux en cours ne sont jamais retires
+    private void purger() {
+        if (runs.size() <= retention) return;
+        List<Run> anciens = list();
+        for (int i = retention; i < anciens.size(); i++) {
+            Run r = anciens.get(i);
+            if (r.termine()) runs.remove(r.id);
+        }
+    }
+}
@@ -1,56 +1,309 @@
 package com.jit.agentInterface.service;
 
 import com.jit.agentInterface.enums.EventType;
+import com.jit.agentInterface.enums.MotifMouvement;
 import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.model.MillilitresConverter;
 import com.jit.agentInterface.model.StockBrute;
 import com.jit.agentInterface.repository.StockBruteRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 @Service
 public class StockBruteService {
 
+    public static final int MAX_MOUVEMENTS = 100;
+
+    private static final Pattern SITE = Pattern.compile("[A-Za-z0-9_-]{1,50}");
+
+    /** Mouvement signe: positif pour une entree, negatif pour une sortie. */
+    public record Mouvement(Type type, BigDecimal delta) {}
+
+    private record Snapshot(long[] quantitesMl, long loadedAt) {} // indexe par Type.ordinal()
+
     private final StockBruteRepository repository;
     private final WebhookDispatcherService webhookDispatcher;
+    private final StockJournalService journal;
+    private final StockWriteBehind writeBehind;
+    private final StockHistoryService history;
+    private final TransactionTemplate transactionTemplate;
+    private final long cacheTtlMs;
+    private final String defaultSite;
+
+    // Cache write-through des quantites courantes par site: mis a jour apres le commit de chaque mouvement local,
+    // recharge apres cacheTtlMs pour prendre en compte les mouvements faits par d'autres noeuds.
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, Long> stockIds = new ConcurrentHashMap<>();
 
-    public StockBruteService(StockBruteRepository repository, WebhookDispatcherService webhookDispatcher) {
+    public StockBruteService(StockBruteRepository repository,
+                             WebhookDispatcherService webhookDispatcher,
+                             StockJournalService journal,
+                             StockWriteBehind writeBehind,
+                             StockHistoryService history,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${stock.cache.ttl-ms:5000}") long cacheTtlMs,
+                             @Value("${stock.default-site:principal}") String defaultSite) {
         this.repository = repository;
         this.webhookDispatcher = webhookDispatcher;
+        this.journal = journal;
+        this.writeBehind = writeBehind;
+        this.history = history;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cacheTtlMs = cacheTtlMs;
+        this.defaultSite = defaultSite;
+    }
+
+    /** Site effectif: le site par defaut si aucun n'est precise. */
+    public String site(String site) {
+        if (site == null || site.isBlank()) return defaultSite;
+        if (!SITE.matcher(site).matches()) throw new IllegalArgumentException("site invalide: " + site);
+        return site;
     }
 
-    private StockBrute getOrCreate() {
-        return repository.findAll().stream().findFirst().orElseGet(() -> repository.save(new StockBrute()));
+    private Long stockId(String site) {
+        Long id = stockIds.get(site);
+        if (id != null) return id;
+        var existing = repository.findIdBySite(site);
+        if (existing.isEmpty()) return repository.idDuSite(site, site.equals(defaultSite)); // memorise une fois la creation validee
+        stockIds.put(site, existing.get());
+        return existing.get();
     }
 
     public BigDecimal augmenter(Type type, BigDecimal quantite) {
-        var sb = getOrCreate();
-        sb.augmenterQuantite(type, quantite);
-        repository.save(sb);
+        return augmenter(null, type, quantite);
+    }
+
+    public BigDecimal augmenter(String site, Type type, BigDecimal quantite) {
+        valider(type, quantite);
+        return MillilitresConverter.versLitres(augmenterMl(site, type, MillilitresConverter.versMl(quantite), MotifMouvement.APPROVISIONNEMENT));
+    }
+
+    // Transaction explicite plutot que @Transactional: le mode write-behind ne doit pas emprunter de connexion
+    public long augmenterMl(String site, Type type, long ml, MotifMouvement motif) {
+        valider(type, ml);
+        String s = site(site);
+        if (writeBehind.couvre(s)) {
+            long restant = writeBehind.augmenter(type, ml, motif);
+            cacheAfterCommit(s, type, restant);
+            return restant;
+        }
+        return transactionTemplate.execute(tx -> augmenterEnBase(s, type, ml, motif));
+    }
+
+    private long augmenterEnBase(String site, Type type, long ml, MotifMouvement motif) {
+        Long id = stockId(site);
+        BigDecimal quantite = MillilitresConverter.versLitres(ml);
+        repository.augmenter(id, type.name(), quantite);
+        journal.enregistrer(site, type, quantite, motif);
+        long restant = restantMl(id, type);
+        cacheAfterCommit(site, type, restant);
         webhookDispatcher.publish(EventType.STOCK_CHANGED, Map.of(
+                "site", site,
                 "type", type.name(),
                 "delta", quantite,
-                "remaining", sb.quantite(type)
+                "remaining", MillilitresConverter.versLitres(restant)
         ));
-        return sb.quantite(type);
+        return restant;
     }
 
     public BigDecimal diminuer(Type type, BigDecimal quantite) {
-        var sb = getOrCreate();
-        sb.diminuerQuantite(type, quantite);
-        repository.save(sb);
+        return diminuer(null, type, quantite);
+    }
+
+    public BigDecimal diminuer(String site, Type type, BigDecimal quantite) {
+        valider(type, quantite);
+        return MillilitresConverter.versLitres(diminuerMl(site, type, MillilitresConverter.versMl(quantite), MotifMouvement.RETRAIT));
+    }
+
+    /** Chemin de production: sans BigDecimal, et sans allocation en mode write-behind hors transaction. */
+    public long diminuerMl(Type type, long ml, MotifMouvement motif) {
+        return diminuerMl(null, type, ml, motif);
+    }
+
+    public long diminuerMl(String site, Type type, long ml, MotifMouvement motif) {
+        valider(type, ml);
+        String s = site(site);
+        if (writeBehind.couvre(s)) {
+            if (!writeBehind.diminuer(type, ml, motif)) throw new IllegalArgumentException("stock insuffisant");
+            long restant = writeBehind.quantiteMl(type);
+            cacheAfterCommit(s, type, restant);
+            return restant;
+        }
+        return transactionTemplate.execute(tx -> diminuerEnBase(s, type, ml, motif));
+    }
+
+    private long diminuerEnBase(String site, Type type, long ml, MotifMouvement motif) {
+        Long id = stockId(site);
+        BigDecimal quantite = MillilitresConverter.versLitres(ml);
+        // decrement conditionnel: la ligne est verrouillee par l'UPDATE, deux appels concurrents ne peuvent pas survendre
+        if (repository.diminuerSiDisponible(id, type.name(), quantite) == 0) {
+            throw new IllegalArgumentException("stock insuffisant");
+        }
+        journal.enregistrer(site, type, quantite.negate(), motif);
+        long restant = restantMl(id, type);
+        cacheAfterCommit(site, type, restant);
         webhookDispatcher.publish(EventType.STOCK_CHANGED, Map.of(
+                "site", site,
                 "type", type.name(),
                 "delta", quantite.negate(),
-                "remaining", sb.quantite(type)
+                "remaining", MillilitresConverter.versLitres(restant)
         ));
-        return sb.quantite(type);
+        return restant;
+    }
+
+    /**
+     * Applique une liste de mouvements sur un site en une seule transaction. Les deltas d'un meme type
+     * sont compenses avant ecriture. Si une sortie depasse le disponible, rien n'est applique. Chaque type
+     * modifie publie son evenement STOCK_CHANGED, de meme forme qu'un mouvement unitaire.
+     *
+     * @return quantites restantes des types modifies
+     */
+    public Map<Type, BigDecimal> appliquer(String site, List<Mouvement> mouvements) {
+        if (mouvements == null || mouvements.isEmpty()) throw new IllegalArgumentException("aucun mouvement");
+        if (mouvements.size() > MAX_MOUVEMENTS) throw new IllegalArgumentException("au plus " + MAX_MOUVEMENTS + " mouvements par appel");
+        String s = site(site);
+        Map<Type, Long> nets = new EnumMap<>(Type.class);
+        for (Mouvement m : mouvements) {
+            Objects.requireNonNull(m, "mouvement null");
+            Objects.requireNonNull(m.type(), "type null");
+            Objects.requireNonNull(m.delta(), "delta null");
+            nets.merge(m.type(), MillilitresConverter.versMl(m.delta()), Long::sum);
+        }
+        nets.values().removeIf(d -> d == 0);
+        Map<Type, BigDecimal> restants = new EnumMap<>(Type.class);
+        if (writeBehind.couvre(s)) {
+            if (!writeBehind.appliquer(nets)) throw new IllegalArgumentException("stock insuffisant");
+            boolean enAttente = TransactionSynchronizationManager.isSynchronizationActive(); // entrees appliquees au commit
+            for (Map.Entry<Type, Long> e : nets.entrySet()) {
+                long restant = writeBehind.quantiteMl(e.getKey()) + (enAttente && e.getValue() > 0 ? e.getValue() : 0);
+                cacheAfterCommit(s, e.getKey(), restant);
+                restants.put(e.getKey(), MillilitresConverter.versLitres(restant));
+            }
+            return restants;
+        }
+        transactionTemplate.executeWithoutResult(tx -> appliquerEnBase(s, nets, restants));
+        return restants;
+    }
+
+    private void appliquerEnBase(String site, Map<Type, Long> nets, Map<Type, BigDecimal> restants) {
+        Long id = stockId(site);
+        // ordre de l'EnumMap: les lignes sont toujours verrouillees dans le meme ordre, pas d'interblocage entre lots
+        for (Map.Entry<Type, Long> e : nets.entrySet()) {
+            Type type = e.getKey();
+            BigDecimal delta = MillilitresConverter.versLitres(e.getValue());
+            if (delta.signum() > 0) {
+                repository.augmenter(id, type.name(), delta);
+            } else if (repository.diminuerSiDisponible(id, type.name(), delta.negate()) == 0) {
+                throw new IllegalArgumentException("stock insuffisant pour " + type);
+            }
+            journal.enregistrer(site, type, delta, delta.signum() > 0 ? MotifMouvement.APPROVISIONNEMENT : MotifMouvement.RETRAIT);
+            long restant = restantMl(id, type);
+            restants.put(type, MillilitresConverter.versLitres(restant));
+            cacheAfterCommit(site, type, restant);
+            webhookDispatcher.publish(EventType.STOCK_CHANGED, Map.of(
+                    "site", site,
+                    "type", type.name(),
+                    "delta", delta,
+                    "remaining", restants.get(type)
+            ));
+        }
+    }
+
+    private long restantMl(Long id, Type type) {
+        return repository.quantite(id, type.name()).map(MillilitresConverter::versMl).orElse(0L);
+    }
+
+    private static void valider(Type type, BigDecimal quantite) {
+        Objects.requireNonNull(type, "type null");
+        Objects.requireNonNull(quantite, "qte null");
+        if (quantite.signum() < 0) throw new IllegalArgumentException("qte negative");
+    }
+
+    private static void valider(Type type, long ml) {
+        Objects.requireNonNull(type, "type null");
+        if (ml < 0) throw new IllegalArgumentException("qte negative");
     }
 
     public BigDecimal quantite(Type type) {
-        var sb = getOrCreate();
-        return sb.quantite(type);
+        return quantite(null, type);
     }
-}
 
+    public BigDecimal quantite(String site, Type type) {
+        return MillilitresConverter.versLitres(quantiteMl(site, type));
+    }
+
+    public long quantiteMl(String site, Type type) {
+        String s = site(site);
+        if (writeBehind.couvre(s)) return writeBehind.quantiteMl(type);
+        return snapshot(s).quantitesMl()[type.ordinal()];
+    }
+
+    /** Quantites courantes de tous les types du site, servies depuis le cache. */
+    public Map<Type, BigDecimal> quantites(String site) {
+        Map<Type, BigDecimal> q = new EnumMap<>(Type.class);
+        for (Type t : Type.values()) q.put(t, quantite(site, t));
+        return Collections.unmodifiableMap(q);
+    }
+
+    /** Somme de tous les sites, calculee en base en une requete. */
+    public Map<Type, BigDecimal> quantitesTotales() {
+        Map<Type, BigDecimal> q = new EnumMap<>(Type.class);
+        for (Type t : Type.values()) q.put(t, BigDecimal.ZERO);
+        if (!writeBehind.isEnabled()) {
+            for (Object[] row : repository.totauxParType()) q.put(Type.valueOf((String) row[0]), (BigDecimal) row[1]);
+            return Collections.unmodifiableMap(q);
+        }
+        // le site tenu en memoire est en avance sur la base jusqu'au prochain flush: ses compteurs font foi
+        for (Object[] row : repository.totauxParTypeHorsSite(defaultSite)) q.put(Type.valueOf((String) row[0]), (BigDecimal) row[1]);
+        for (Type t : Type.values()) q.put(t, q.get(t).add(MillilitresConverter.versLitres(writeBehind.quantiteMl(t))));
+        return Collections.unmodifiableMap(q);
+    }
+
+    private Snapshot snapshot(String site) {
+        Snapshot s = snapshots.get(site);
+        if (s == null || System.currentTimeMillis() - s.loadedAt() > cacheTtlMs) {
+            StockBrute sb = repository.findBySite(site).orElseGet(StockBrute::new);
+            long[] q = new long[Type.values().length];
+            for (Type t : Type.values()) q[t.ordinal()] = sb.quantiteMl(t);
+            s = new Snapshot(q, System.currentTimeMillis());
+            snapshots.put(site, s);
+        }
+        return s;
+    }
+
+    // cache et historique ne voient que des niveaux valides
+    private void cacheAfterCommit(String site, Type type, long restantMl) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache(site, type, restantMl);
+                }
+            });
+        } else {
+            cache(site, type, restantMl);
+        }
+    }
+
+    private void cache(String site, Type type, long restantMl) {
+        history.enregistrer(site, type, restantMl);
+        snapshots.computeIfPresent(site, (k, s) -> { // absent: sera recharge a la prochaine lecture
+            long[] q = s.quantitesMl().clone();
+            q[type.ordinal()] = restantMl;
+            return new Snapshot(q, s.loadedAt());
+        });
+    }
+}
@@ -0,0 +1,90 @@
+package com.jit.agentInterface.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jit.agentInterface.model.WebhookSubscription;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regroupe les evenements STOCK_CHANGED d'une souscription sur une fenetre de temps: pour chaque
+ * cle (type de stock ou categorie), un seul evenement est emis a la fin de la fenetre avec le
+ * dernier etat connu, la somme des deltas et le nombre d'evenements fusionnes.
+ * Les evenements en attente ne sont pas durables: un arret pendant la fenetre les perd, ce qui
+ * est acceptable pour des abonnes qui ne suivent que le niveau courant.
+ */
+class StockEventCoalescer {
+
+    interface Sink {
+        void send(WebhookSubscription sub, JsonNode payload, Instant timestamp);
+    }
+
+    private record Key(Long subscriptionId, String stockKey) {}
+
+    private static final class Pending {
+        final WebhookSubscription sub;
+        ObjectNode latest;
+        BigDecimal delta;
+        int count;
+        Instant timestamp;
+
+        Pending(WebhookSubscription sub) { this.sub = sub; }
+
+        void merge(ObjectNode node, Instant at) {
+            latest = node;
+            timestamp = at;
+            count++;
+            JsonNode d = node.get("delta");
+            if (d != null && d.isNumber()) delta = delta == null ? d.decimalValue() : delta.add(d.decimalValue());
+        }
+
+        ObjectNode toPayload() {
+            ObjectNode out = latest.deepCopy();
+            if (delta != null) out.put("delta", delta);
+            out.put("coalesced", count);
+            return out;
+        }
+    }
+
+    private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Sink sink;
+
+    StockEventCoalescer(ScheduledExecutorService scheduler, Sink sink) {
+        this.scheduler = scheduler;
+        this.sink = sink;
+    }
+
+    /** @return false si le payload n'est pas regroupable et doit etre envoye tel quel */
+    boolean offer(WebhookSubscription sub, Object payload, Instant timestamp) {
+        if (!(payload instanceof ObjectNode node)) return false;
+        String stockKey = node.hasNonNull("type") ? node.get("type").asText()
+                : node.hasNonNull("category") ? node.get("category").asText() : null;
+        if (stockKey == null) return false;
+        if (node.hasNonNull("site")) stockKey = node.get("site").asText() + '/' + stockKey; // un meme type sur deux sites: deux flux
+        Key key = new Key(sub.getId(), stockKey);
+        pending.compute(key, (k, p) -> {
+            if (p == null) {
+                p = new Pending(sub);
+                scheduler.schedule(() -> flush(k), sub.getCoalesceWindowMs(), TimeUnit.MILLISECONDS);
+            }
+            p.merge(node, timestamp);
+            return p;
+        });
+        return true;
+    }
+
+    private void flush(Key key) {
+        Pending p = pending.remove(key);
+        if (p != null) sink.send(p.sub, p.toPayload(), p.timestamp);
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+}
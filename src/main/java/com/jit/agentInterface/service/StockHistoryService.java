@@ -0,0 +1,160 @@
+package com.jit.agentInterface.service;
+
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.model.MillilitresConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Historique en memoire du niveau de stock brut par site et par type, a trois resolutions
+ * (1 s, 1 min, 1 h). Chaque resolution est un tampon circulaire de taille fixe en tableaux primitifs
+ * (debut de periode, min, max, dernier niveau), alimente a chaque mouvement: l'enregistrement
+ * n'alloue pas et la lecture ne touche pas la base. L'historique repart de zero au redemarrage.
+ */
+@Service
+public class StockHistoryService {
+
+    public enum Resolution {
+        SECONDE("1s", 1_000L),
+        MINUTE("1m", 60_000L),
+        HEURE("1h", 3_600_000L);
+
+        private final String code;
+        private final long millis;
+
+        Resolution(String code, long millis) {
+            this.code = code;
+            this.millis = millis;
+        }
+
+        public static Resolution parse(String code) {
+            for (Resolution r : values()) if (r.code.equals(code) || r.name().equalsIgnoreCase(code)) return r;
+            throw new IllegalArgumentException("resolution inconnue: " + code + " (1s, 1m ou 1h)");
+        }
+    }
+
+    public record Point(Instant t, BigDecimal min, BigDecimal max, BigDecimal last) {}
+
+    /** Tampon circulaire d'une resolution; acces sous le moniteur de la Serie. */
+    private static final class Anneau {
+        final long periode;
+        final long[] debut;
+        final long[] min;
+        final long[] max;
+        final long[] last;
+        int tete = -1; // derniere periode ecrite
+        int taille;
+
+        Anneau(long periode, int capacite) {
+            this.periode = periode;
+            this.debut = new long[capacite];
+            this.min = new long[capacite];
+            this.max = new long[capacite];
+            this.last = new long[capacite];
+        }
+
+        void enregistrer(long niveau, long now) {
+            long p = now - Math.floorMod(now, periode);
+            if (tete >= 0 && debut[tete] == p) {
+                if (niveau < min[tete]) min[tete] = niveau;
+                if (niveau > max[tete]) max[tete] = niveau;
+                last[tete] = niveau;
+                return;
+            }
+            if (tete >= 0 && p < debut[tete]) return; // horloge revenue en arriere: echantillon ignore
+            long precedent = tete >= 0 ? last[tete] : niveau;
+            tete = (tete + 1) % debut.length;
+            if (taille < debut.length) taille++;
+            debut[tete] = p;
+            // la periode commence au niveau precedent (fonction en escalier)
+            min[tete] = Math.min(precedent, niveau);
+            max[tete] = Math.max(precedent, niveau);
+            last[tete] = niveau;
+        }
+
+        /** Periodes de la fenetre, de la plus ancienne a la periode courante; les periodes sans mouvement reprennent le dernier niveau. */
+        List<Point> lire(long now) {
+            List<Point> out = new ArrayList<>();
+            if (taille == 0) return out;
+            long courante = now - Math.floorMod(now, periode);
+            long fenetre = courante - (debut.length - 1) * periode;
+            int i = Math.floorMod(tete - taille + 1, debut.length);
+            long niveau = 0;
+            for (int n = 0; n < taille; n++, i = (i + 1) % debut.length) {
+                if (n > 0) combler(out, Math.max(fenetre, debut[Math.floorMod(i - 1, debut.length)] + periode), debut[i], niveau);
+                if (debut[i] >= fenetre) out.add(point(debut[i], min[i], max[i], last[i]));
+                niveau = last[i];
+            }
+            combler(out, Math.max(fenetre, debut[tete] + periode), courante + periode, niveau);
+            return out;
+        }
+
+        private void combler(List<Point> out, long de, long jusqua, long niveau) {
+            for (long p = de; p < jusqua; p += periode) out.add(point(p, niveau, niveau, niveau));
+        }
+
+        private static Point point(long debut, long min, long max, long last) {
+            return new Point(Instant.ofEpochMilli(debut), MillilitresConverter.versLitres(min),
+                    MillilitresConverter.versLitres(max), MillilitresConverter.versLitres(last));
+        }
+    }
+
+    private static final class Serie {
+        final Anneau[] anneaux;
+
+        Serie(int[] capacites) {
+            anneaux = new Anneau[Resolution.values().length];
+            for (Resolution r : Resolution.values()) anneaux[r.ordinal()] = new Anneau(r.millis, capacites[r.ordinal()]);
+        }
+    }
+
+    private final Map<String, Serie[]> series = new ConcurrentHashMap<>();
+    private final int[] capacites;
+
+    public StockHistoryService(@Value("${stock.history.seconds:3600}") int secondes,
+                               @Value("${stock.history.minutes:1440}") int minutes,
+                               @Value("${stock.history.hours:720}") int heures) {
+        if (secondes < 1 || minutes < 1 || heures < 1) throw new IllegalArgumentException("stock.history.*: capacite >= 1");
+        this.capacites = new int[]{secondes, minutes, heures};
+    }
+
+    /** Nouveau niveau d'un type sur un site, en millilitres. */
+    public void enregistrer(String site, Type type, long niveauMl) {
+        enregistrer(site, type, niveauMl, System.currentTimeMillis());
+    }
+
+    public void enregistrer(String site, Type type, long niveauMl, long now) {
+        Serie[] parType = series.get(site);
+        if (parType == null) parType = series.computeIfAbsent(site, k -> nouvellesSeries());
+        Serie serie = parType[type.ordinal()];
+        synchronized (serie) {
+            for (Anneau a : serie.anneaux) a.enregistrer(niveauMl, now);
+        }
+    }
+
+    public List<Point> historique(String site, Type type, Resolution resolution) {
+        return historique(site, type, resolution, System.currentTimeMillis());
+    }
+
+    public List<Point> historique(String site, Type type, Resolution resolution, long now) {
+        Serie[] parType = series.get(site);
+        if (parType == null) return List.of();
+        Serie serie = parType[type.ordinal()];
+        synchronized (serie) {
+            return serie.anneaux[resolution.ordinal()].lire(now);
+        }
+    }
+
+    private Serie[] nouvellesSeries() {
+        Serie[] s = new Serie[Type.values().length];
+        for (int i = 0; i < s.length; i++) s[i] = new Serie(capacites);
+        return s;
+    }
+}
@@ -0,0 +1,134 @@
+package com.jit.agentInterface.service;
+
+import com.jit.agentInterface.enums.MotifMouvement;
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.model.StockBrute;
+import com.jit.agentInterface.model.StockMouvement;
+import com.jit.agentInterface.model.StockSnapshot;
+import com.jit.agentInterface.repository.StockBruteRepository;
+import com.jit.agentInterface.repository.StockMouvementRepository;
+import com.jit.agentInterface.repository.StockSnapshotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journal append-only des mouvements de stock brut (table stock_mouvement) et snapshots periodiques
+ * (table stock_snapshot). Le niveau d'un type se recalcule par le dernier snapshot plus la somme des
+ * mouvements posterieurs; les quantites de stock_brut_quantites restent la reference pour refuser
+ * une sortie superieure au disponible et sont comparees au journal a chaque snapshot.
+ */
+@Service
+public class StockJournalService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockJournalService.class);
+
+    public static final int MAX_LIMIT = 1000;
+
+    public record Niveau(String site, Type type, BigDecimal quantite, Instant snapshotAt, long dernierMouvementId) {}
+
+    private final StockMouvementRepository mouvementRepository;
+    private final StockSnapshotRepository snapshotRepository;
+    private final StockBruteRepository stockBruteRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public StockJournalService(StockMouvementRepository mouvementRepository,
+                               StockSnapshotRepository snapshotRepository,
+                               StockBruteRepository stockBruteRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.mouvementRepository = mouvementRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.stockBruteRepository = stockBruteRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /** Ajoute un mouvement au journal, dans la transaction de l'appelant. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public StockMouvement enregistrer(String site, Type type, BigDecimal delta, MotifMouvement motif) {
+        return enregistrer(site, type, delta, motif, acteur());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public StockMouvement enregistrer(String site, Type type, BigDecimal delta, MotifMouvement motif, String acteur) {
+        return mouvementRepository.save(new StockMouvement(site, type, delta, motif, acteur, Instant.now()));
+    }
+
+    public List<StockMouvement> historique(String site, Type type, Instant from, Instant to, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) throw new ServiceException(HttpStatus.BAD_REQUEST, "limit doit etre entre 1 et " + MAX_LIMIT);
+        Instant debut = from == null ? Instant.EPOCH : from;
+        Instant fin = to == null ? Instant.now() : to;
+        if (fin.isBefore(debut)) throw new ServiceException(HttpStatus.BAD_REQUEST, "to doit etre posterieur a from");
+        PageRequest page = PageRequest.of(0, limit);
+        return type == null
+                ? mouvementRepository.findBySiteAndCreatedAtBetweenOrderByIdDesc(site, debut, fin, page)
+                : mouvementRepository.findBySiteAndTypeAndCreatedAtBetweenOrderByIdDesc(site, type, debut, fin, page);
+    }
+
+    /** Niveau recalcule depuis le journal: dernier snapshot du site + mouvements posterieurs. */
+    @Transactional(readOnly = true)
+    public Niveau niveau(String site, Type type) {
+        var snap = snapshotRepository.findFirstBySiteAndTypeOrderByDernierMouvementIdDesc(site, type).orElse(null);
+        long apres = snap == null ? 0 : snap.getDernierMouvementId();
+        BigDecimal base = snap == null ? BigDecimal.ZERO : snap.getQuantite();
+        return new Niveau(site, type, base.add(mouvementRepository.sommeDeltasApres(site, type, apres)),
+                snap == null ? null : snap.getCreatedAt(), apres);
+    }
+
+    /**
+     * Fige le niveau de chaque type, site par site, une transaction par site. La ligne du site est
+     * verrouillee le temps du calcul: tous ses mouvements d'identifiant inferieur au maximum lu sont alors
+     * valides, aucun ne peut etre rejoue deux fois ni oublie. Le premier snapshot d'un type reprend la
+     * quantite existante (stock anterieur au journal).
+     */
+    @Scheduled(fixedDelayString = "${stock.journal.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        for (StockBrute sb : stockBruteRepository.findAll()) {
+            if (sb.getSite() == null) continue; // ligne historique pas encore rattachee au site par defaut
+            transactionTemplate.executeWithoutResult(s -> snapshot(sb.getId(), sb.getSite()));
+        }
+    }
+
+    private void snapshot(Long stockId, String site) {
+        if (stockBruteRepository.verrouiller(stockId).isEmpty()) return;
+        Map<Type, BigDecimal> materialise = new EnumMap<>(Type.class);
+        for (Object[] row : stockBruteRepository.verrouillerQuantites(stockId)) {
+            materialise.put(Type.valueOf((String) row[0]), (BigDecimal) row[1]);
+        }
+        long upTo = mouvementRepository.maxId();
+        Instant now = Instant.now();
+        for (Type type : Type.values()) {
+            BigDecimal actuel = materialise.getOrDefault(type, BigDecimal.ZERO);
+            var prev = snapshotRepository.findFirstBySiteAndTypeOrderByDernierMouvementIdDesc(site, type).orElse(null);
+            if (prev == null) {
+                snapshotRepository.save(new StockSnapshot(site, type, actuel, upTo, now));
+                continue;
+            }
+            if (prev.getDernierMouvementId() >= upTo) continue; // aucun mouvement depuis
+            BigDecimal niveau = prev.getQuantite().add(mouvementRepository.sommeDeltas(site, type, prev.getDernierMouvementId(), upTo));
+            if (niveau.compareTo(actuel) != 0) {
+                log.warn("Stock journal drift for {}/{}: journal={} stock={}", site, type, niveau, actuel);
+            }
+            snapshotRepository.save(new StockSnapshot(site, type, niveau, upTo, now));
+        }
+    }
+
+    static String acteur() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth == null || auth.getName() == null ? "system" : auth.getName();
+    }
+}
@@ -0,0 +1,163 @@
+package com.jit.agentInterface.service;
+
+import com.jit.agentInterface.enums.MotifMouvement;
+import com.jit.agentInterface.enums.ReservationStatus;
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.model.MillilitresConverter;
+import com.jit.agentInterface.model.StockReservation;
+import com.jit.agentInterface.repository.StockReservationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reservations de stock brut pour les ordres de production. Reserver diminue le stock du site une fois,
+ * pour toute la quantite; chaque bouteille consomme ensuite la reservation par une mise a jour
+ * conditionnelle de sa propre ligne, sans reverifier ni verrouiller le stock global. Un registre en
+ * memoire du reste de chaque reservation refuse sans aller en base les consommations qui depassent.
+ * A expiration ou annulation, la partie non consommee est rendue au stock.
+ */
+@Service
+public class StockReservationService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationService.class);
+
+    private record Entree(Type type, long expiresAt, AtomicLong restant) {}
+
+    private final StockReservationRepository repository;
+    private final StockBruteService stockBruteService;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final int batchSize;
+
+    // reste de chaque reservation active, charge a la premiere consommation; la base reste l'arbitre
+    private final Map<Long, Entree> registre = new ConcurrentHashMap<>();
+
+    public StockReservationService(StockReservationRepository repository,
+                                   StockBruteService stockBruteService,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${stock.reservation.default-ttl-ms:28800000}") long defaultTtlMs,
+                                   @Value("${stock.reservation.max-ttl-ms:86400000}") long maxTtlMs,
+                                   @Value("${stock.reservation.expiry-batch-size:100}") int batchSize) {
+        this.repository = repository;
+        this.stockBruteService = stockBruteService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultTtl = Duration.ofMillis(defaultTtlMs);
+        this.maxTtl = Duration.ofMillis(maxTtlMs);
+        this.batchSize = batchSize;
+    }
+
+    @Transactional
+    public StockReservation reserver(String site, Type type, BigDecimal quantite, Long ttlMs, String reference) {
+        Objects.requireNonNull(type, "type null");
+        Objects.requireNonNull(quantite, "qte null");
+        if (quantite.signum() <= 0) throw new IllegalArgumentException("qte doit etre positive");
+        Duration ttl = ttlMs == null ? defaultTtl : Duration.ofMillis(ttlMs);
+        if (ttl.isNegative() || ttl.isZero() || ttl.compareTo(maxTtl) > 0) {
+            throw new ServiceException(HttpStatus.BAD_REQUEST, "ttl doit etre entre 1 et " + maxTtl.toMillis() + " ms");
+        }
+        String s = stockBruteService.site(site);
+        long ml = MillilitresConverter.versMl(quantite);
+        Instant now = Instant.now();
+        StockReservation r = repository.saveAndFlush(new StockReservation(s, type, ml, reference,
+                StockJournalService.acteur(), now, now.plus(ttl)));
+        // en dernier: plus rien ne peut echouer dans la transaction une fois le stock preleve
+        stockBruteService.diminuerMl(s, type, ml, MotifMouvement.RESERVATION);
+        return r;
+    }
+
+    /**
+     * Consomme {@code ml} d'une reservation pour une bouteille de type {@code type}, dans la transaction
+     * de l'appelant. Si celle-ci est annulee, le registre est restaure.
+     */
+    public void consommer(Long reservationId, Type type, long ml) {
+        Entree e = registre.get(reservationId);
+        if (e == null) e = charger(reservationId);
+        if (e.type() != type) throw new IllegalArgumentException("reservation d'un autre type: " + e.type());
+        if (System.currentTimeMillis() >= e.expiresAt()) throw new IllegalArgumentException("reservation expiree");
+        long v;
+        do {
+            v = e.restant().get();
+            if (v < ml) throw new IllegalArgumentException("reservation insuffisante: reste " + MillilitresConverter.versLitres(v) + " L");
+        } while (!e.restant().compareAndSet(v, v - ml));
+        if (repository.consommer(reservationId, MillilitresConverter.versLitres(ml), Instant.now()) == 0) {
+            registre.remove(reservationId); // le registre etait en avance sur la base (autre noeud, expiration): rechargement
+            throw new IllegalArgumentException("reservation expiree, annulee ou epuisee");
+        }
+        Entree entree = e;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) entree.restant().addAndGet(ml);
+                }
+            });
+        }
+    }
+
+    private Entree charger(Long reservationId) {
+        StockReservation r = repository.findById(reservationId)
+                .orElseThrow(() -> new ServiceException(HttpStatus.NOT_FOUND, "reservation introuvable"));
+        if (r.getStatus() != ReservationStatus.ACTIVE) throw new IllegalArgumentException("reservation " + r.getStatus().name().toLowerCase());
+        Entree e = new Entree(r.getType(), r.getExpiresAt().toEpochMilli(), new AtomicLong(r.restantMl()));
+        Entree prev = registre.putIfAbsent(reservationId, e);
+        return prev == null ? e : prev;
+    }
+
+    @Transactional
+    public StockReservation annuler(Long id) {
+        StockReservation r = repository.verrouiller(id)
+                .orElseThrow(() -> new ServiceException(HttpStatus.NOT_FOUND, "reservation introuvable"));
+        if (r.getStatus() != ReservationStatus.ACTIVE) throw new ServiceException(HttpStatus.CONFLICT, "reservation deja " + r.getStatus().name().toLowerCase());
+        liberer(r, ReservationStatus.ANNULEE);
+        return r;
+    }
+
+    /** Rend au stock la partie non consommee des reservations echues. */
+    @Scheduled(fixedDelayString = "${stock.reservation.expiry-interval-ms:60000}")
+    public void expirer() {
+        Integer n;
+        do {
+            n = transactionTemplate.execute(s -> {
+                List<StockReservation> echues = repository.verrouillerExpirees(Instant.now(), batchSize);
+                for (StockReservation r : echues) liberer(r, ReservationStatus.EXPIREE);
+                return echues.size();
+            });
+            if (n != null && n > 0) log.info("Stock reservations: {} expired", n);
+        } while (n != null && n == batchSize);
+    }
+
+    private void liberer(StockReservation r, ReservationStatus status) {
+        r.cloturer(status);
+        repository.save(r);
+        registre.remove(r.getId());
+        long restant = r.restantMl();
+        if (restant > 0) stockBruteService.augmenterMl(r.getSite(), r.getType(), restant, MotifMouvement.LIBERATION);
+    }
+
+    public List<StockReservation> list(ReservationStatus status) {
+        return repository.findByStatusOrderByIdDesc(status == null ? ReservationStatus.ACTIVE : status);
+    }
+
+    public StockReservation get(Long id) {
+        return repository.findById(id).orElseThrow(() -> new ServiceException(HttpStatus.NOT_FOUND, "reservation introuvable"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.jit.agentInterface.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compteur de stock non negatif reparti sur plusieurs cellules atomiques. Chaque thread decremente
+ * d'abord "sa" cellule par CAS; une cellule insuffisante fait essayer les suivantes, puis regrouper
+ * toutes les cellules sous verrou. Un refus n'est donc prononce que si le total est reellement insuffisant.
+ */
+public final class StripedStockCounter {
+
+    private static final int PAD = 8; // une cellule par ligne de cache de 64 octets
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    public StripedStockCounter(int stripes, long initial) {
+        if (initial < 0) throw new IllegalArgumentException("stock initial negatif");
+        int n = 1;
+        while (n < stripes) n <<= 1;
+        this.cells = new AtomicLongArray(n * PAD);
+        this.mask = n - 1;
+        repartir(initial);
+    }
+
+    public void add(long qty) {
+        if (qty < 0) throw new IllegalArgumentException("qte negative");
+        cells.getAndAdd(stripe() * PAD, qty);
+    }
+
+    /** Retire {@code qty} si le total le permet. Ne rend jamais le total negatif. */
+    public boolean tryDecrement(long qty) {
+        if (qty < 0) throw new IllegalArgumentException("qte negative");
+        int start = stripe();
+        for (int i = 0; i <= mask; i++) {
+            int idx = ((start + i) & mask) * PAD;
+            long v = cells.get(idx);
+            while (v >= qty) {
+                if (cells.compareAndSet(idx, v, v - qty)) return true;
+                v = cells.get(idx);
+            }
+        }
+        return regrouperEtDecrementer(qty);
+    }
+
+    public long sum() {
+        long total = 0;
+        for (int i = 0; i <= mask; i++) total += cells.get(i * PAD);
+        return total;
+    }
+
+    private synchronized boolean regrouperEtDecrementer(long qty) {
+        long total = 0;
+        for (int i = 0; i <= mask; i++) total += cells.getAndSet(i * PAD, 0);
+        boolean ok = total >= qty;
+        repartir(ok ? total - qty : total);
+        return ok;
+    }
+
+    // redistribue un total preleve sur les cellules; le reste de la division va a la premiere
+    private void repartir(long total) {
+        int n = mask + 1;
+        long part = total / n;
+        for (int i = 0; i < n; i++) cells.getAndAdd(i * PAD, i == 0 ? total - part * (n - 1) : part);
+    }
+
+    private int stripe() {
+        return (int) Thread.currentThread().getId() & mask;
+    }
+}
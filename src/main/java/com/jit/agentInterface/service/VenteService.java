@@ -12,6 +12,7 @@ import com.jit.agentInterface.repository.VenteRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.time.LocalDate;
@@ -41,6 +42,7 @@ public class VenteService {
         this.webhookDispatcher = webhookDispatcher;
     }
 
+    @Transactional
     public Vente createVente(VenteType type, String vendeurId, List<LigneInput> lignes, Authentication auth) {
         // Authorization
         if (type == VenteType.AU_VENDEUR && !hasAnyRole(auth, Role.Agent_commercial, Role.Admin)) {
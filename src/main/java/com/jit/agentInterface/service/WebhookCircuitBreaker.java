@@ -0,0 +1,85 @@
+package com.jit.agentInterface.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Disjoncteur par targetUrl. Apres {@code failure-threshold} echecs consecutifs le circuit s'ouvre
+ * pendant {@code open-duration-ms}: les livraisons vers cette cible echouent immediatement sans appel
+ * reseau. A l'expiration, une seule requete d'essai est laissee passer (demi-ouvert); son succes
+ * referme le circuit, son echec le rouvre.
+ */
+@Service
+public class WebhookCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookCircuitBreaker.class);
+
+    private static final class Circuit {
+        int failures;
+        Instant openUntil;   // null = ferme
+        boolean probing;     // une requete d'essai est en cours
+    }
+
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final int failureThreshold;
+    private final long openDurationMs;
+
+    public WebhookCircuitBreaker(MeterRegistry meterRegistry,
+                                 @Value("${webhooks.circuit.failure-threshold:5}") int failureThreshold,
+                                 @Value("${webhooks.circuit.open-duration-ms:30000}") long openDurationMs) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDurationMs;
+        Gauge.builder("webhooks.circuit.open", circuits, m -> m.values().stream().filter(c -> c.openUntil != null).count())
+                .register(meterRegistry);
+    }
+
+    public boolean allow(String targetUrl) {
+        Circuit c = circuits.computeIfAbsent(targetUrl, k -> new Circuit());
+        synchronized (c) {
+            if (c.openUntil == null) return true;
+            if (Instant.now().isBefore(c.openUntil) || c.probing) return false;
+            c.probing = true;
+            return true;
+        }
+    }
+
+    /** Instant a partir duquel une nouvelle tentative a une chance de passer. */
+    public Instant retryAt(String targetUrl) {
+        Circuit c = circuits.get(targetUrl);
+        if (c == null) return Instant.now();
+        synchronized (c) {
+            return c.openUntil == null ? Instant.now() : c.openUntil;
+        }
+    }
+
+    public void onSuccess(String targetUrl) {
+        Circuit c = circuits.get(targetUrl);
+        if (c == null) return;
+        synchronized (c) {
+            if (c.openUntil != null) log.info("Webhook circuit closed for {}", targetUrl);
+            c.failures = 0;
+            c.openUntil = null;
+            c.probing = false;
+        }
+    }
+
+    public void onFailure(String targetUrl) {
+        Circuit c = circuits.computeIfAbsent(targetUrl, k -> new Circuit());
+        synchronized (c) {
+            c.failures++;
+            if (c.probing || c.failures >= failureThreshold) {
+                if (c.openUntil == null) log.warn("Webhook circuit opened for {} after {} failures", targetUrl, c.failures);
+                c.openUntil = Instant.now().plusMillis(openDurationMs);
+                c.probing = false;
+            }
+        }
+    }
+}
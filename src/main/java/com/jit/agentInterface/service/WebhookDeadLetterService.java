@@ -0,0 +1,177 @@
+package com.jit.agentInterface.service;
+
+import com.jit.agentInterface.enums.EventType;
+import com.jit.agentInterface.enums.WebhookDeliveryStatus;
+import com.jit.agentInterface.model.WebhookDeadLetter;
+import com.jit.agentInterface.model.WebhookSubscription;
+import com.jit.agentInterface.repository.WebhookDeadLetterRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Nouvelles tentatives et lettres mortes des webhooks. Une livraison en echec est enregistree
+ * dans webhook_dead_letter avec une date de prochaine tentative (backoff exponentiel avec gigue);
+ * un traitement planifie reprend les lignes echues avec FOR UPDATE SKIP LOCKED. Apres
+ * {@code max-attempts} echecs, ou passe {@code max-age-ms}, la ligne passe en DEAD et n'est
+ * plus rejouee qu'a la demande d'un administrateur. Une tentative court-circuitee par le
+ * disjoncteur n'est pas comptee: elle est simplement reportee a la reouverture du circuit.
+ */
+@Service
+public class WebhookDeadLetterService {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookDeadLetterService.class);
+
+    private final WebhookDeadLetterRepository repository;
+    private final WebhookHttpClient httpClient;
+    private final WebhookCircuitBreaker circuitBreaker;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter deadLettered;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final long attemptTimeoutMs;
+
+    public WebhookDeadLetterService(WebhookDeadLetterRepository repository,
+                                    WebhookHttpClient httpClient,
+                                    WebhookCircuitBreaker circuitBreaker,
+                                    PlatformTransactionManager transactionManager,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${webhooks.retry.max-attempts:5}") int maxAttempts,
+                                    @Value("${webhooks.retry.initial-backoff-ms:1000}") long initialBackoffMs,
+                                    @Value("${webhooks.retry.max-backoff-ms:60000}") long maxBackoffMs,
+                                    @Value("${webhooks.retry.max-age-ms:3600000}") long maxAgeMs,
+                                    @Value("${webhooks.retry.batch-size:50}") int batchSize,
+                                    @Value("${webhooks.retry.attempt-timeout-ms:10000}") long attemptTimeoutMs) {
+        this.repository = repository;
+        this.httpClient = httpClient;
+        this.circuitBreaker = circuitBreaker;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.deadLettered = meterRegistry.counter("webhooks.dispatch.dead_lettered");
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.maxAge = Duration.ofMillis(maxAgeMs);
+        this.batchSize = batchSize;
+        this.attemptTimeoutMs = attemptTimeoutMs;
+    }
+
+    /** Enregistre l'echec d'une premiere tentative et planifie la suivante. */
+    public void recordFailure(WebhookSubscription sub, EventType type, String body, Throwable error) {
+        WebhookDeadLetter dl = new WebhookDeadLetter(sub, type, body);
+        echec(dl, error);
+        repository.save(dl);
+    }
+
+    @Scheduled(fixedDelayString = "${webhooks.retry.poll-interval-ms:1000}")
+    public void retryDue() {
+        int claimed;
+        do {
+            claimed = retryBatch();
+        } while (claimed == batchSize && !Thread.currentThread().isInterrupted());
+    }
+
+    /**
+     * Une courte transaction reserve les lignes echues en repoussant leur echeance au-dela de la duree
+     * d'une tentative; les envois se font hors transaction, puis une seconde transaction supprime les
+     * lignes livrees et planifie les suivantes. Une reservation abandonnee (arret) expire d'elle-meme.
+     */
+    private int retryBatch() {
+        List<WebhookDeadLetter> due = transactionTemplate.execute(status -> claim());
+        if (due == null || due.isEmpty()) return 0;
+        Map<Long, CompletableFuture<Void>> inFlight = new LinkedHashMap<>();
+        for (WebhookDeadLetter dl : due) inFlight.put(dl.getId(), httpClient.post(dl.getTargetUrl(), dl.getBody().getBytes(StandardCharsets.UTF_8)));
+        List<Long> delivered = new ArrayList<>();
+        Map<Long, Throwable> failures = new HashMap<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(attemptTimeoutMs);
+        for (Map.Entry<Long, CompletableFuture<Void>> entry : inFlight.entrySet()) {
+            try {
+                entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                delivered.add(entry.getKey());
+            } catch (ExecutionException e) {
+                failures.put(entry.getKey(), e.getCause());
+            } catch (TimeoutException e) {
+                failures.put(entry.getKey(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break; // lignes restantes: reprises a l'expiration de leur reservation
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!delivered.isEmpty()) repository.deleteAllByIdInBatch(delivered);
+            for (WebhookDeadLetter dl : repository.findAllById(failures.keySet())) echec(dl, failures.get(dl.getId()));
+        });
+        return due.size();
+    }
+
+    private List<WebhookDeadLetter> claim() {
+        Instant now = Instant.now();
+        List<WebhookDeadLetter> due = repository.lockDueRetries(now, batchSize);
+        Instant until = now.plusMillis(attemptTimeoutMs + 1000);
+        for (WebhookDeadLetter dl : due) dl.reclamer(until); // ecrit au commit
+        return due;
+    }
+
+    private void echec(WebhookDeadLetter dl, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        boolean circuitOuvert = cause instanceof WebhookHttpClient.CircuitOpenException;
+        String message = cause instanceof TimeoutException ? "timeout" : cause.getMessage();
+        Instant prochaine = circuitOuvert ? circuitBreaker.retryAt(dl.getTargetUrl()) : Instant.now().plusMillis(backoff(dl.getAttempts() + 1));
+        dl.echec(message, prochaine, !circuitOuvert);
+        if (dl.getAttempts() >= maxAttempts || dl.debutTentatives().plus(maxAge).isBefore(Instant.now())) {
+            dl.abandonner();
+            deadLettered.increment();
+            log.warn("Webhook to {} dead-lettered after {} attempts: {}", dl.getTargetUrl(), dl.getAttempts(), message);
+        }
+    }
+
+    private long backoff(int attempt) {
+        long base = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 30));
+        long jitter = base / 5;
+        return base - jitter + ThreadLocalRandom.current().nextLong(2 * jitter + 1);
+    }
+
+    public List<WebhookDeadLetter> list(WebhookDeliveryStatus status) {
+        return repository.findByStatusOrderByIdDesc(status);
+    }
+
+    @Transactional
+    public WebhookDeadLetter replay(Long id) {
+        WebhookDeadLetter dl = repository.findById(id)
+                .orElseThrow(() -> new ServiceException(HttpStatus.NOT_FOUND, "lettre morte introuvable"));
+        dl.rejouer();
+        return dl;
+    }
+
+    public void delete(Long id) {
+        if (!repository.existsById(id)) {
+            throw new ServiceException(HttpStatus.NOT_FOUND, "lettre morte introuvable");
+        }
+        repository.deleteById(id);
+    }
+}
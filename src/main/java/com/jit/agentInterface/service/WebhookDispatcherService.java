@@ -1,61 +1,303 @@
 package com.jit.agentInterface.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jit.agentInterface.enums.EventType;
+import com.jit.agentInterface.enums.WebhookOverflowPolicy;
+import com.jit.agentInterface.model.EventLogEntry;
+import com.jit.agentInterface.model.WebhookOutboxEvent;
 import com.jit.agentInterface.model.WebhookSubscription;
-import com.jit.agentInterface.repository.WebhookSubscriptionRepository;
+import com.jit.agentInterface.repository.EventLogRepository;
+import com.jit.agentInterface.repository.WebhookOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class WebhookDispatcherService {
 
     private static final Logger log = LoggerFactory.getLogger(WebhookDispatcherService.class);
 
-    private final WebhookSubscriptionRepository repository;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final WebhookRoutingTable routingTable;
+    private final WebhookOutboxRepository outboxRepository;
+    private final EventLogRepository eventLogRepository;
+    private final WebhookHttpClient httpClient;
+    private final WebhookDeadLetterService deadLetters;
+    private final EventStreamService eventStream;
     private final ObjectMapper mapper = new ObjectMapper();
 
-    public WebhookDispatcherService(WebhookSubscriptionRepository repository) {
-        this.repository = repository;
+    // Les evenements sont mis en file puis livres par un pool dedie: le thread appelant ne fait jamais d'appel HTTP.
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("webhook-scheduler-"));
+    private final StockEventCoalescer coalescer;
+    private final Counter delivered;
+    private final Counter failed;
+    private final Counter shortCircuited;
+    private final Counter filteredOut;
+    private final Counter droppedOldest;
+    private final Counter rejected;
+
+    public WebhookDispatcherService(WebhookRoutingTable routingTable,
+                                    WebhookOutboxRepository outboxRepository,
+                                    EventLogRepository eventLogRepository,
+                                    WebhookHttpClient httpClient,
+                                    WebhookDeadLetterService deadLetters,
+                                    EventStreamService eventStream,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${webhooks.dispatch.workers:4}") int workerCount,
+                                    @Value("${webhooks.dispatch.queue-capacity:1000}") int queueCapacity,
+                                    @Value("${webhooks.dispatch.overflow-policy:BLOCK}") WebhookOverflowPolicy overflowPolicy) {
+        this.routingTable = routingTable;
+        this.outboxRepository = outboxRepository;
+        this.eventLogRepository = eventLogRepository;
+        this.httpClient = httpClient;
+        this.deadLetters = deadLetters;
+        this.eventStream = eventStream;
+        this.delivered = meterRegistry.counter("webhooks.dispatch.delivered");
+        this.failed = meterRegistry.counter("webhooks.dispatch.failed");
+        this.shortCircuited = meterRegistry.counter("webhooks.dispatch.short_circuited");
+        this.filteredOut = meterRegistry.counter("webhooks.dispatch.filtered_out");
+        this.droppedOldest = meterRegistry.counter("webhooks.dispatch.dropped", "policy", WebhookOverflowPolicy.DROP_OLDEST.name());
+        this.rejected = meterRegistry.counter("webhooks.dispatch.dropped", "policy", WebhookOverflowPolicy.REJECT.name());
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads("webhook-dispatch-"), overflowHandler(overflowPolicy));
+        this.coalescer = new StockEventCoalescer(scheduler,
+                (sub, merged, at) -> workers.execute(() -> {
+                    byte[] body = render(EventType.STOCK_CHANGED, merged, at);
+                    if (body != null) send(sub, EventType.STOCK_CHANGED, body);
+                }));
+        Gauge.builder("webhooks.dispatch.coalescing.pending", coalescer, StockEventCoalescer::pendingCount).register(meterRegistry);
+        Gauge.builder("webhooks.dispatch.queue.depth", workers, w -> w.getQueue().size()).register(meterRegistry);
+        Gauge.builder("webhooks.dispatch.queue.remaining", workers, w -> w.getQueue().remainingCapacity()).register(meterRegistry);
     }
 
+    /**
+     * Ecrit l'evenement dans l'outbox et le journal d'evenements, dans la transaction de l'appelant:
+     * il ne sera visible (et livre par {@link WebhookOutboxRelay}) que si la modification metier est
+     * validee. Les flux SSE locaux recoivent l'evenement au commit.
+     */
     public void publish(EventType type, Object payload) {
-        List<WebhookSubscription> subs = repository.findByActiveTrue();
-        if (subs.isEmpty()) return;
-        for (WebhookSubscription sub : subs) {
-            if (!sub.getEventTypes().isEmpty() && !sub.getEventTypes().contains(type)) continue;
-            send(sub, type, payload);
+        Instant timestamp = Instant.now();
+        String json;
+        try {
+            json = mapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("payload webhook non serialisable: " + e.getMessage(), e);
+        }
+        outboxRepository.save(new WebhookOutboxEvent(type, json));
+        eventLogRepository.save(new EventLogEntry(type, json, timestamp));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eventStream.broadcast(type, payload, timestamp);
+                }
+            });
+        } else {
+            eventStream.broadcast(type, payload, timestamp);
         }
     }
 
-    private void send(WebhookSubscription sub, EventType type, Object payload) {
-        Map<String, Object> event = new HashMap<>();
-        event.put("eventType", type.name());
-        event.put("timestamp", Instant.now().toString());
-        event.put("payload", payload);
+    // Tache de livraison identifiable par la politique de debordement, qui echoue son futur si elle l'ecarte
+    private static final class Envoi implements Runnable {
+        private final Runnable corps;
+        private final CompletableFuture<Set<Long>> resultat;
+
+        Envoi(Runnable corps, CompletableFuture<Set<Long>> resultat) {
+            this.corps = corps;
+            this.resultat = resultat;
+        }
+
+        @Override
+        public void run() { corps.run(); }
+
+        void ecarter(String raison) { resultat.completeExceptionally(new RejectedExecutionException(raison)); }
+    }
+
+    /**
+     * Met la livraison en file pour les souscriptions du type absentes de {@code servies}. Cet ensemble
+     * (concurrent) est complete au fil de l'eau par les souscriptions servies: livrees, filtrees, regroupees
+     * ou dont l'echec est confie aux nouvelles tentatives; l'appelant connait donc l'avancement meme s'il
+     * cesse d'attendre. Le futur donne les souscriptions en echec une fois toutes les requetes terminees,
+     * et echoue si la politique de debordement ecarte l'evenement.
+     */
+    public CompletableFuture<Set<Long>> dispatch(EventType type, Object payload, Instant timestamp, Set<Long> servies) {
+        CompletableFuture<Set<Long>> done = new CompletableFuture<>();
+        workers.execute(new Envoi(() -> {
+            try {
+                deliver(type, payload, timestamp, servies).whenComplete((r, ex) -> {
+                    if (ex == null) done.complete(r);
+                    else done.completeExceptionally(ex);
+                });
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        }, done));
+        return done;
+    }
+
+    public int queueDepth() {
+        return workers.getQueue().size();
+    }
+
+    /** Relivre un evenement deja journalise a une seule souscription (rejeu), sans regroupement. */
+    public void redeliver(WebhookSubscription sub, EventType type, JsonNode payload, Instant timestamp) {
+        workers.execute(() -> {
+            byte[] body = render(type, payload, timestamp);
+            if (body != null) send(sub, type, body);
+        });
+    }
+
+    private CompletableFuture<Set<Long>> deliver(EventType type, Object payload, Instant timestamp, Set<Long> servies) {
+        WebhookRoutingTable.Route[] routes = routingTable.routes(type);
+        Set<Long> echecs = ConcurrentHashMap.newKeySet();
+        if (routes.length == 0) return CompletableFuture.completedFuture(echecs);
+        List<CompletableFuture<?>> sends = new ArrayList<>(routes.length);
+        JsonNode tree = null;
+        byte[] body = null; // rendu au premier abonne non regroupe, puis partage
+        for (WebhookRoutingTable.Route route : routes) {
+            WebhookSubscription sub = route.subscription();
+            if (servies.contains(sub.getId())) continue;
+            if (!route.filter().isMatchAll()) {
+                if (tree == null) tree = payload instanceof JsonNode n ? n : mapper.valueToTree(payload);
+                if (!route.filter().matches(tree)) {
+                    filteredOut.increment();
+                    servies.add(sub.getId());
+                    continue;
+                }
+            }
+            if (type == EventType.STOCK_CHANGED && sub.getCoalesceWindowMs() > 0
+                    && coalescer.offer(sub, payload, timestamp)) {
+                servies.add(sub.getId());
+                continue;
+            }
+            if (body == null && (body = render(type, payload, timestamp)) == null) break;
+            sends.add(send(sub, type, body).handle((r, ex) -> (ex == null ? servies : echecs).add(sub.getId())));
+        }
+        return CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).thenApply(v -> echecs);
+    }
+
+    private byte[] render(EventType type, Object payload, Instant timestamp) {
         try {
-            String json = mapper.writeValueAsString(event);
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            HttpEntity<String> entity = new HttpEntity<>(json, headers);
-            restTemplate.postForEntity(sub.getTargetUrl(), entity, String.class);
+            return WebhookEnvelope.render(type, timestamp, payload);
         } catch (JsonProcessingException e) {
-            log.warn("Webhook serialization failed for subscription {}: {}", sub.getId(), e.getMessage());
-        } catch (Exception ex) {
-            log.warn("Webhook dispatch failed to {}: {}", sub.getTargetUrl(), ex.getMessage());
+            failed.increment();
+            log.warn("Webhook serialization failed for {} event: {}", type, e.getMessage());
+            return null;
         }
     }
-}
 
+    private CompletableFuture<Void> send(WebhookSubscription sub, EventType type, byte[] body) {
+        return httpClient.post(sub.getTargetUrl(), body).handle((r, ex) -> {
+            if (ex == null) {
+                delivered.increment();
+                return null;
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof WebhookHttpClient.CircuitOpenException) {
+                shortCircuited.increment();
+            } else {
+                failed.increment();
+                log.warn("Webhook dispatch failed to {}, retry scheduled: {}", sub.getTargetUrl(), rootMessage(ex));
+            }
+            // l'echec n'est considere comme traite qu'une fois la nouvelle tentative enregistree
+            try {
+                deadLetters.recordFailure(sub, type, new String(body, StandardCharsets.UTF_8), cause);
+            } catch (RuntimeException e) {
+                log.error("Webhook retry could not be recorded for {}: {}", sub.getTargetUrl(), e.getMessage());
+                throw new CompletionException(cause);
+            }
+            return null;
+        });
+    }
+
+    private static String rootMessage(Throwable ex) {
+        Throwable t = ex;
+        while (t.getCause() != null) t = t.getCause();
+        return t.getMessage() != null ? t.getMessage() : t.getClass().getSimpleName();
+    }
+
+    private RejectedExecutionHandler overflowHandler(WebhookOverflowPolicy policy) {
+        return switch (policy) {
+            case BLOCK -> (task, executor) -> {
+                if (executor.isShutdown()) {
+                    ecarter(task, "dispatcher arrete");
+                    return;
+                }
+                try {
+                    executor.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    ecarter(task, "interrompu en attente de place dans la file");
+                    log.warn("Webhook event discarded: interrupted while waiting for queue capacity");
+                }
+            };
+            case DROP_OLDEST -> (task, executor) -> {
+                if (executor.isShutdown()) {
+                    ecarter(task, "dispatcher arrete");
+                    return;
+                }
+                Runnable oldest = executor.getQueue().poll();
+                if (oldest != null) {
+                    droppedOldest.increment();
+                    ecarter(oldest, "file pleine: evenement le plus ancien ecarte");
+                }
+                executor.execute(task);
+            };
+            case REJECT -> (task, executor) -> {
+                rejected.increment();
+                ecarter(task, "file pleine");
+                log.warn("Webhook queue full ({} pending): event discarded", executor.getQueue().size());
+            };
+        };
+    }
+
+    private static void ecarter(Runnable task, String raison) {
+        if (task instanceof Envoi envoi) envoi.ecarter(raison);
+    }
+
+    static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        workers.shutdown();
+        if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Webhook dispatcher stopped with {} pending events", workers.getQueue().size());
+            for (Runnable task : workers.shutdownNow()) ecarter(task, "dispatcher arrete");
+        }
+    }
+}
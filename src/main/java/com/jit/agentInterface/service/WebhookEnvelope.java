@@ -0,0 +1,24 @@
+package com.jit.agentInterface.service;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.jit.agentInterface.enums.EventType;
+
+import java.time.Instant;
+
+/**
+ * Enveloppe JSON envoyee aux abonnes: {"eventType", "timestamp", "payload"}.
+ * Elle est rendue une seule fois par evenement et le meme tableau d'octets est partage par
+ * toutes les livraisons de cet evenement; il ne doit donc jamais etre modifie.
+ */
+@JsonPropertyOrder({"eventType", "timestamp", "payload"})
+public record WebhookEnvelope(String eventType, String timestamp, Object payload) {
+
+    private static final ObjectWriter WRITER = new ObjectMapper().writerFor(WebhookEnvelope.class);
+
+    public static byte[] render(EventType type, Instant timestamp, Object payload) throws JsonProcessingException {
+        return WRITER.writeValueAsBytes(new WebhookEnvelope(type.name(), timestamp.toString(), payload));
+    }
+}
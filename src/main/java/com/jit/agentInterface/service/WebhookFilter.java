@@ -0,0 +1,108 @@
+package com.jit.agentInterface.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Filtre compile d'une souscription webhook, evalue sur le payload avant tout appel HTTP.
+ * Syntaxe: une conjonction de comparaisons {@code champ op valeur} separees par {@code &&} ou {@code AND},
+ * par exemple {@code type == ZITBLAD && remaining < 100} ou {@code vendeurId == 12}.
+ * Operateurs: ==, !=, <, <=, >, >=; les operateurs d'ordre exigent une valeur numerique.
+ * Les valeurs peuvent etre entre guillemets simples ou doubles; un champ peut etre un chemin pointe (a.b).
+ */
+public final class WebhookFilter {
+
+    public static final WebhookFilter MATCH_ALL = new WebhookFilter(List.of());
+
+    private static final Pattern AND = Pattern.compile("\\s*(?:&&|\\bAND\\b)\\s*", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CLAUSE = Pattern.compile("^([A-Za-z_][\\w.]*)\\s*(==|!=|<=|>=|<|>)\\s*(.+)$");
+
+    private enum Op { EQ, NE, LT, LE, GT, GE }
+
+    private record Clause(String[] path, Op op, String text, BigDecimal number) {
+
+        boolean matches(JsonNode payload) {
+            JsonNode node = payload;
+            for (String p : path) {
+                node = node == null ? null : node.get(p);
+            }
+            if (node == null || node.isNull()) return op == Op.NE;
+            BigDecimal actual = numeric(node);
+            if (number != null && actual != null) {
+                int c = actual.compareTo(number);
+                return switch (op) {
+                    case EQ -> c == 0;
+                    case NE -> c != 0;
+                    case LT -> c < 0;
+                    case LE -> c <= 0;
+                    case GT -> c > 0;
+                    case GE -> c >= 0;
+                };
+            }
+            return switch (op) {
+                case EQ -> node.asText().equals(text);
+                case NE -> !node.asText().equals(text);
+                default -> false;
+            };
+        }
+
+        private static BigDecimal numeric(JsonNode node) {
+            if (node.isNumber()) return node.decimalValue();
+            if (!node.isTextual()) return null;
+            try { return new BigDecimal(node.asText()); } catch (NumberFormatException e) { return null; }
+        }
+    }
+
+    private final List<Clause> clauses;
+
+    private WebhookFilter(List<Clause> clauses) {
+        this.clauses = clauses;
+    }
+
+    /** @throws IllegalArgumentException si l'expression est invalide */
+    public static WebhookFilter compile(String expression) {
+        if (expression == null || expression.isBlank()) return MATCH_ALL;
+        List<Clause> clauses = new ArrayList<>();
+        for (String raw : AND.split(expression.trim())) {
+            Matcher m = CLAUSE.matcher(raw.trim());
+            if (!m.matches()) throw new IllegalArgumentException("clause de filtre invalide: " + raw.trim());
+            Op op = switch (m.group(2)) {
+                case "==" -> Op.EQ;
+                case "!=" -> Op.NE;
+                case "<" -> Op.LT;
+                case "<=" -> Op.LE;
+                case ">" -> Op.GT;
+                default -> Op.GE;
+            };
+            String value = m.group(3).trim();
+            boolean quoted = value.length() >= 2
+                    && (value.startsWith("'") && value.endsWith("'") || value.startsWith("\"") && value.endsWith("\""));
+            String text = quoted ? value.substring(1, value.length() - 1) : value;
+            BigDecimal number = null;
+            if (!quoted) {
+                try { number = new BigDecimal(text); } catch (NumberFormatException ignored) {}
+            }
+            if (number == null && op != Op.EQ && op != Op.NE) {
+                throw new IllegalArgumentException("valeur numerique attendue pour " + m.group(2) + ": " + value);
+            }
+            clauses.add(new Clause(m.group(1).split("\\."), op, text, number));
+        }
+        return new WebhookFilter(List.copyOf(clauses));
+    }
+
+    public boolean matches(JsonNode payload) {
+        for (Clause c : clauses) {
+            if (!c.matches(payload)) return false;
+        }
+        return true;
+    }
+
+    public boolean isMatchAll() {
+        return clauses.isEmpty();
+    }
+}
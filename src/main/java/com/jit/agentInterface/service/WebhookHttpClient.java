@@ -0,0 +1,165 @@
+package com.jit.agentInterface.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client HTTP partage pour la livraison des webhooks: connexions keep-alive reutilisees, timeouts de
+ * connexion et de requete, et un nombre borne de requetes en vol par cible (scheme://host:port) afin
+ * qu'un recepteur lent ne puisse pas monopoliser la capacite de livraison. Au-dela, les requetes
+ * attendent dans une file bornee par cible, demarree a chaque fin de requete: l'appelant n'est jamais
+ * bloque, et la file pleine echoue immediatement. Les cibles dont le {@link WebhookCircuitBreaker}
+ * est ouvert sont court-circuitees sans appel reseau.
+ */
+@Service
+public class WebhookHttpClient {
+
+    public static class DeliveryException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public DeliveryException(String message) { super(message); }
+    }
+
+    public static class CircuitOpenException extends DeliveryException {
+        private static final long serialVersionUID = 1L;
+
+        public CircuitOpenException(String targetUrl) { super("circuit ouvert pour " + targetUrl); }
+    }
+
+    // Requetes en vol et en attente vers une cible
+    private static final class Cible {
+        final Semaphore permis;
+        final ConcurrentLinkedQueue<Runnable> attente = new ConcurrentLinkedQueue<>();
+        final AtomicInteger enAttente = new AtomicInteger();
+
+        Cible(int maxInFlight) { this.permis = new Semaphore(maxInFlight); }
+    }
+
+    private final HttpClient client;
+    private final ExecutorService ioExecutor;
+    private final WebhookCircuitBreaker circuitBreaker;
+    private final Duration requestTimeout;
+    private final int maxInFlightPerTarget;
+    private final int maxQueuedPerTarget;
+    private final Map<String, Cible> cibles = new ConcurrentHashMap<>();
+
+    public WebhookHttpClient(WebhookCircuitBreaker circuitBreaker,
+                             @Value("${webhooks.http.connect-timeout-ms:2000}") long connectTimeoutMs,
+                             @Value("${webhooks.http.request-timeout-ms:5000}") long requestTimeoutMs,
+                             @Value("${webhooks.http.max-in-flight-per-target:8}") int maxInFlightPerTarget,
+                             @Value("${webhooks.http.max-queued-per-target:1000}") int maxQueuedPerTarget,
+                             @Value("${webhooks.http.io-threads:4}") int ioThreads) {
+        this.circuitBreaker = circuitBreaker;
+        this.ioExecutor = Executors.newFixedThreadPool(ioThreads, WebhookDispatcherService.daemonThreads("webhook-http-"));
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(ioExecutor)
+                .build();
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.maxInFlightPerTarget = maxInFlightPerTarget;
+        this.maxQueuedPerTarget = maxQueuedPerTarget;
+    }
+
+    /** Envoie le JSON en POST; le futur echoue sur erreur reseau, timeout, statut non 2xx ou file pleine. */
+    public CompletableFuture<Void> post(String targetUrl, byte[] json) {
+        URI uri;
+        try {
+            uri = URI.create(targetUrl);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new DeliveryException("URL invalide: " + targetUrl));
+        }
+        Cible cible = cibles.computeIfAbsent(targetKey(uri), k -> new Cible(maxInFlightPerTarget));
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (cible.permis.tryAcquire()) {
+            demarrer(cible, uri, targetUrl, json, result);
+            relancer(cible);
+            return result;
+        }
+        if (cible.enAttente.incrementAndGet() > maxQueuedPerTarget) {
+            cible.enAttente.decrementAndGet();
+            return CompletableFuture.failedFuture(new DeliveryException("trop de requetes en attente vers " + uri.getHost()));
+        }
+        cible.attente.add(() -> demarrer(cible, uri, targetUrl, json, result));
+        relancer(cible); // un permis a pu se liberer entre l'essai et la mise en file
+        return result;
+    }
+
+    // Appele avec un permis acquis; le permis est rendu a la fin de la requete
+    private void demarrer(Cible cible, URI uri, String targetUrl, byte[] json, CompletableFuture<Void> result) {
+        // verifie apres l'obtention du permis: une requete d'essai accordee aboutit toujours a onSuccess/onFailure
+        if (!circuitBreaker.allow(targetUrl)) {
+            cible.permis.release(); // l'appelant relance la file
+            result.completeExceptionally(new CircuitOpenException(targetUrl));
+            return;
+        }
+        CompletableFuture<HttpResponse<Void>> response;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(json))
+                    .build();
+            response = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(new DeliveryException("requete invalide vers " + targetUrl + ": " + e.getMessage()));
+        }
+        response
+                .whenComplete((r, ex) -> liberer(cible))
+                .thenAccept(r -> {
+                    if (r.statusCode() / 100 != 2) throw new DeliveryException("HTTP " + r.statusCode() + " depuis " + targetUrl);
+                })
+                .whenComplete((r, ex) -> {
+                    if (ex == null) {
+                        circuitBreaker.onSuccess(targetUrl);
+                        result.complete(null);
+                    } else {
+                        circuitBreaker.onFailure(targetUrl);
+                        result.completeExceptionally(ex);
+                    }
+                });
+    }
+
+    private void liberer(Cible cible) {
+        cible.permis.release();
+        relancer(cible);
+    }
+
+    // Demarre les requetes en attente tant qu'il reste des permis
+    private void relancer(Cible cible) {
+        while (!cible.attente.isEmpty() && cible.permis.tryAcquire()) {
+            Runnable suivante = cible.attente.poll();
+            if (suivante == null) {
+                cible.permis.release();
+                if (cible.attente.isEmpty()) return;
+                continue;
+            }
+            cible.enAttente.decrementAndGet();
+            suivante.run();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ioExecutor.shutdownNow();
+    }
+
+    private static String targetKey(URI uri) {
+        return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+    }
+}
@@ -0,0 +1,139 @@
+package com.jit.agentInterface.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jit.agentInterface.model.WebhookOutboxEvent;
+import com.jit.agentInterface.repository.WebhookOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Draine l'outbox webhook par lots, en trois temps: une courte transaction reserve le lot
+ * (FOR UPDATE SKIP LOCKED puis {@code claimed_until}), la livraison HTTP se fait hors transaction,
+ * puis une seconde courte transaction supprime les lignes livrees a toutes leurs souscriptions et
+ * reporte les autres. Aucune connexion ni verrou n'est donc tenu pendant les appels reseau; plusieurs
+ * noeuds relaient en parallele sans se partager une ligne reservee, et une reservation expiree (noeud
+ * arrete) est reprise par un autre. Les souscriptions deja servies sont memorisees par ligne: une
+ * relivraison ne concerne que celles en echec. Semantique at-least-once, jamais de perte.
+ */
+@Service
+public class WebhookOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookOutboxRelay.class);
+
+    private final WebhookOutboxRepository outboxRepository;
+    private final WebhookDispatcherService dispatcher;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final int batchSize;
+    private final long deliveryTimeoutMs;
+    private final long claimMs;
+    private final long retryDelayMs;
+
+    public WebhookOutboxRelay(WebhookOutboxRepository outboxRepository,
+                              WebhookDispatcherService dispatcher,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${webhooks.outbox.batch-size:100}") int batchSize,
+                              @Value("${webhooks.outbox.delivery-timeout-ms:30000}") long deliveryTimeoutMs,
+                              @Value("${webhooks.outbox.claim-ms:60000}") long claimMs,
+                              @Value("${webhooks.outbox.retry-delay-ms:5000}") long retryDelayMs) {
+        this.outboxRepository = outboxRepository;
+        this.dispatcher = dispatcher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.deliveryTimeoutMs = deliveryTimeoutMs;
+        // la reservation doit couvrir l'attente des livraisons, sinon un autre noeud reprendrait le lot
+        this.claimMs = Math.max(claimMs, deliveryTimeoutMs + 1000);
+        this.retryDelayMs = retryDelayMs;
+    }
+
+    @Scheduled(fixedDelayString = "${webhooks.outbox.poll-interval-ms:500}")
+    public void drain() {
+        int claimed;
+        do {
+            claimed = relayBatch();
+        } while (claimed == batchSize && !Thread.currentThread().isInterrupted());
+    }
+
+    private int relayBatch() {
+        List<WebhookOutboxEvent> batch = transactionTemplate.execute(status -> claim());
+        if (batch == null || batch.isEmpty()) return 0;
+
+        Map<WebhookOutboxEvent, CompletableFuture<Set<Long>>> pending = new LinkedHashMap<>();
+        Map<WebhookOutboxEvent, Set<Long>> servies = new HashMap<>();
+        List<Long> done = new ArrayList<>();
+        for (WebhookOutboxEvent e : batch) {
+            JsonNode payload = readPayload(e);
+            if (payload == null) { done.add(e.getId()); continue; } // ligne illisible: on ne la rejoue pas indefiniment
+            Set<Long> s = ConcurrentHashMap.newKeySet();
+            s.addAll(e.souscriptionsServies());
+            servies.put(e, s);
+            pending.put(e, dispatcher.dispatch(e.getEventType(), payload, e.getCreatedAt(), s));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deliveryTimeoutMs);
+        Map<Long, Set<Long>> partial = new HashMap<>();
+        for (Map.Entry<WebhookOutboxEvent, CompletableFuture<Set<Long>>> entry : pending.entrySet()) {
+            WebhookOutboxEvent e = entry.getKey();
+            try {
+                Set<Long> echecs = entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (echecs.isEmpty()) {
+                    done.add(e.getId());
+                    continue;
+                }
+                log.warn("Outbox event {} not delivered to subscriptions {}, will retry", e.getId(), echecs);
+            } catch (TimeoutException ex) {
+                log.warn("Outbox event {} not delivered within {} ms, will retry", e.getId(), deliveryTimeoutMs);
+            } catch (ExecutionException ex) {
+                log.warn("Outbox event {} dispatch failed, will retry: {}", e.getId(), ex.getCause().getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break; // lignes non traitees: reprises a l'expiration de leur reservation
+            }
+            partial.put(e.getId(), Set.copyOf(servies.get(e))); // seules les souscriptions restantes seront relivrees
+        }
+        transactionTemplate.executeWithoutResult(status -> complete(done, partial));
+        return batch.size();
+    }
+
+    private List<WebhookOutboxEvent> claim() {
+        Instant now = Instant.now();
+        List<WebhookOutboxEvent> batch = outboxRepository.lockNextBatch(now, batchSize);
+        Instant until = now.plusMillis(claimMs);
+        for (WebhookOutboxEvent e : batch) e.reclamer(until); // ecrit au commit
+        return batch;
+    }
+
+    private void complete(List<Long> done, Map<Long, Set<Long>> partial) {
+        if (!done.isEmpty()) outboxRepository.deleteAllByIdInBatch(done);
+        Instant reprise = Instant.now().plusMillis(retryDelayMs);
+        partial.forEach((id, servies) -> outboxRepository.reporter(id, WebhookOutboxEvent.encoderServies(servies), reprise));
+    }
+
+    private JsonNode readPayload(WebhookOutboxEvent e) {
+        try {
+            return mapper.readTree(e.getPayload());
+        } catch (IOException ex) {
+            log.warn("Outbox event {} has an unreadable payload, discarded: {}", e.getId(), ex.getMessage());
+            return null;
+        }
+    }
+}
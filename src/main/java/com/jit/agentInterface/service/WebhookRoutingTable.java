@@ -0,0 +1,71 @@
+package com.jit.agentInterface.service;
+
+import com.jit.agentInterface.enums.EventType;
+import com.jit.agentInterface.model.WebhookSubscription;
+import com.jit.agentInterface.repository.WebhookSubscriptionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table de routage en memoire: pour chaque {@link EventType}, le tableau des souscriptions actives
+ * accompagnees de leur filtre deja compile.
+ * La table est reconstruite d'un bloc puis publiee par une seule ecriture volatile, les lecteurs
+ * voient donc toujours une version complete. Elle est rafraichie apres chaque creation/suppression
+ * locale et periodiquement pour prendre en compte les modifications faites par les autres noeuds.
+ * Les reconstructions sont serialisees: une lecture anterieure a une creation ne peut pas etre publiee
+ * apres la table qui l'inclut.
+ */
+@Service
+public class WebhookRoutingTable {
+
+    public record Route(WebhookSubscription subscription, WebhookFilter filter) {}
+
+    private static final Route[] NONE = new Route[0];
+    private static final Logger log = LoggerFactory.getLogger(WebhookRoutingTable.class);
+
+    private final WebhookSubscriptionRepository repository;
+    private volatile Map<EventType, Route[]> routes;
+
+    public WebhookRoutingTable(WebhookSubscriptionRepository repository) {
+        this.repository = repository;
+    }
+
+    public Route[] routes(EventType type) {
+        Map<EventType, Route[]> current = routes;
+        if (current == null) {
+            refresh();
+            current = routes;
+        }
+        return current.getOrDefault(type, NONE);
+    }
+
+    @Scheduled(fixedDelayString = "${webhooks.routing.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        Map<EventType, List<Route>> byType = new EnumMap<>(EventType.class);
+        for (EventType t : EventType.values()) byType.put(t, new ArrayList<>());
+        for (WebhookSubscription sub : repository.findByActiveTrue()) {
+            WebhookFilter filter;
+            try {
+                filter = WebhookFilter.compile(sub.getFilterExpression());
+            } catch (IllegalArgumentException e) {
+                log.warn("Webhook subscription {} ignored, invalid filter: {}", sub.getId(), e.getMessage());
+                continue;
+            }
+            Route route = new Route(sub, filter);
+            // pas de type d'evenement => abonne a tous les evenements
+            for (EventType t : sub.getEventTypes().isEmpty() ? List.of(EventType.values()) : sub.getEventTypes()) {
+                byType.get(t).add(route);
+            }
+        }
+        Map<EventType, Route[]> next = new EnumMap<>(EventType.class);
+        byType.forEach((t, subs) -> next.put(t, subs.toArray(NONE)));
+        routes = next;
+    }
+}
@@ -13,19 +13,35 @@ import java.util.Set;
 public class WebhookSubscriptionService {
 
     private final WebhookSubscriptionRepository repository;
+    private final WebhookRoutingTable routingTable;
 
-    public WebhookSubscriptionService(WebhookSubscriptionRepository repository) {
+    public WebhookSubscriptionService(WebhookSubscriptionRepository repository, WebhookRoutingTable routingTable) {
         this.repository = repository;
+        this.routingTable = routingTable;
     }
 
-    public WebhookSubscription create(String targetUrl, Set<EventType> eventTypes) {
+    private static final int MAX_COALESCE_WINDOW_MS = 60_000;
+
+    public WebhookSubscription create(String targetUrl, Set<EventType> eventTypes, Integer coalesceWindowMs, String filter) {
         if (targetUrl == null || targetUrl.isBlank()) {
             throw new ServiceException(HttpStatus.BAD_REQUEST, "targetUrl requis");
         }
+        if (coalesceWindowMs != null && (coalesceWindowMs < 0 || coalesceWindowMs > MAX_COALESCE_WINDOW_MS)) {
+            throw new ServiceException(HttpStatus.BAD_REQUEST, "coalesceWindowMs doit etre entre 0 et " + MAX_COALESCE_WINDOW_MS);
+        }
+        try {
+            WebhookFilter.compile(filter);
+        } catch (IllegalArgumentException e) {
+            throw new ServiceException(HttpStatus.BAD_REQUEST, "filter invalide: " + e.getMessage());
+        }
         WebhookSubscription sub = new WebhookSubscription();
         sub.setTargetUrl(targetUrl);
         if (eventTypes != null) sub.setEventTypes(eventTypes);
-        return repository.save(sub);
+        sub.setCoalesceWindowMs(coalesceWindowMs);
+        sub.setFilterExpression(filter == null || filter.isBlank() ? null : filter.trim());
+        WebhookSubscription saved = repository.save(sub);
+        routingTable.refresh();
+        return saved;
     }
 
     public List<WebhookSubscription> list() {
@@ -37,6 +53,7 @@ public class WebhookSubscriptionService {
             throw new ServiceException(HttpStatus.NOT_FOUND, "subscription introuvable");
         }
         repository.deleteById(id);
+        routingTable.refresh();
     }
 }
 
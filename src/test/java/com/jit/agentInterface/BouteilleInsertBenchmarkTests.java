@@ -0,0 +1,62 @@
+package com.jit.agentInterface;
+
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.model.Bouteille;
+import com.jit.agentInterface.model.Litrage;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Insertion de 10k bouteilles: une instruction par ligne (comportement des identifiants IDENTITY,
+ * reproduit avec un lot JDBC de 1) contre lots JDBC de hibernate.jdbc.batch_size. Les instructions
+ * preparees sont comptees par les statistiques Hibernate; les transactions sont annulees.
+ */
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class BouteilleInsertBenchmarkTests extends PostgresIntegrationTests {
+
+    private static final int BOUTEILLES = 10_000;
+
+    @Autowired EntityManager entityManager;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Test
+    void batched_inserts_prepare_fewer_statements_than_row_by_row_inserts() {
+        long ligneParLigne = inserer(1);
+        long parLots = inserer(null);
+        assertTrue(ligneParLigne >= BOUTEILLES, "une instruction par ligne attendue: " + ligneParLigne);
+        assertTrue(parLots * 10 < ligneParLigne, "lots JDBC sans effet: " + parLots + " instructions contre " + ligneParLigne);
+    }
+
+    // instructions preparees pour inserer les bouteilles (sequence comprise)
+    private long inserer(Integer jdbcBatchSize) {
+        Statistics stats = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        return tx.execute(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            if (jdbcBatchSize != null) session.setJdbcBatchSize(jdbcBatchSize);
+            stats.clear();
+            for (int i = 0; i < BOUTEILLES; i++) {
+                Bouteille b = new Bouteille();
+                b.setType(Type.ZITBLAD);
+                b.setLitrage(new Litrage(1.0));
+                b.setPrix(10);
+                entityManager.persist(b);
+            }
+            entityManager.flush();
+            assertEquals(BOUTEILLES, stats.getEntityInsertCount());
+            long instructions = stats.getPrepareStatementCount();
+            entityManager.clear();
+            status.setRollbackOnly();
+            return instructions;
+        });
+    }
+}
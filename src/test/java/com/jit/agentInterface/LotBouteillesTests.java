@@ -0,0 +1,45 @@
+package com.jit.agentInterface;
+
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.model.Boite;
+import com.jit.agentInterface.model.Litrage;
+import com.jit.agentInterface.model.LotBouteilles;
+import com.jit.agentInterface.model.ProduitFactory;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Mise en carton depuis un lot: ratio du litrage, decompte du lot, aucune bouteille materialisee. */
+class LotBouteillesTests {
+
+    // createBoites ne touche pas au stock: les services ne sont pas necessaires
+    private final ProduitFactory factory = new ProduitFactory(null, null);
+
+    @Test
+    void cartons_are_counted_against_the_lot_at_the_litrage_ratio() {
+        LotBouteilles lot = new LotBouteilles(Type.values()[0], new Litrage(0.5), 1.2, 100, null, Instant.now());
+
+        List<Boite> boites = factory.createBoites(lot, 3, 30.0);
+
+        assertEquals(3, boites.size());
+        assertEquals(90, lot.getEmballees());
+        assertEquals(10, lot.restantes());
+        for (Boite b : boites) {
+            assertSame(lot, b.getLot());
+            assertEquals(30, b.getQuantite());
+            assertTrue(b.getBouteilles().isEmpty());
+        }
+    }
+
+    @Test
+    void a_lot_cannot_be_cartoned_beyond_its_remaining_bottles() {
+        LotBouteilles lot = new LotBouteilles(Type.values()[0], new Litrage(5.0), 10.0, 20, null, Instant.now());
+
+        factory.createBoites(lot, 3, 55.0);
+        assertThrows(IllegalArgumentException.class, () -> factory.createBoites(lot, 1, 55.0));
+        assertEquals(18, lot.getEmballees());
+    }
+}
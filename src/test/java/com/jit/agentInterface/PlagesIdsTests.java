@@ -0,0 +1,33 @@
+package com.jit.agentInterface;
+
+import com.jit.agentInterface.model.PlagesIds;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlagesIdsTests {
+
+    @Test
+    void consecutive_ids_collapse_into_one_range() {
+        List<Long> ids = java.util.stream.LongStream.rangeClosed(101, 130).boxed().toList();
+        assertEquals("101-130", PlagesIds.encoder(ids));
+        assertArrayEquals(ids.stream().mapToLong(Long::longValue).toArray(), PlagesIds.decoder("101-130"));
+    }
+
+    @Test
+    void order_and_gaps_survive_a_round_trip() {
+        List<Long> ids = List.of(9L, 10L, 11L, 5L, 20L, 21L);
+        String plages = PlagesIds.encoder(ids);
+        assertEquals("9-11,5,20-21", plages);
+        assertArrayEquals(new long[]{9, 10, 11, 5, 20, 21}, PlagesIds.decoder(plages));
+    }
+
+    @Test
+    void empty_and_invalid_input() {
+        assertEquals("", PlagesIds.encoder(List.of()));
+        assertEquals(0, PlagesIds.decoder("").length);
+        assertThrows(IllegalArgumentException.class, () -> PlagesIds.decoder("30-10"));
+    }
+}
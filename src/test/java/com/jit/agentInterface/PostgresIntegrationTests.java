@@ -0,0 +1,20 @@
+package com.jit.agentInterface;
+
+import com.jit.agentInterface.service.WebhookDispatcherService;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Socle des tests d'integration: schema cree dans une base PostgreSQL jetable (ignores sans Docker),
+ * dispatcher webhook remplace par un bouchon pour qu'aucun evenement n'atteigne l'outbox ni un abonne.
+ */
+@SpringBootTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@Import(PostgresTestConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+abstract class PostgresIntegrationTests {
+
+    @MockitoBean
+    protected WebhookDispatcherService webhookDispatcherService;
+}
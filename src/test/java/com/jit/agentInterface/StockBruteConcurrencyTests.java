@@ -0,0 +1,115 @@
+package com.jit.agentInterface;
+
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.repository.StockBruteRepository;
+import com.jit.agentInterface.service.StockBruteService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test du decrement de stock brut: 64 ecrivains concurrents, contre une base jetable. Compare
+ * le decrement SQL conditionnel de StockBruteService a l'ancienne lecture-modification-ecriture,
+ * reproduite ici; les debits des deux chemins sont publies dans le rapport de test.
+ */
+class StockBruteConcurrencyTests extends PostgresIntegrationTests {
+
+    private static final int WRITERS = 64;
+    private static final int OPS_PER_WRITER = 50;
+
+    @Autowired StockBruteService stockBruteService;
+    @Autowired StockBruteRepository stockBruteRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired JdbcTemplate jdbc;
+
+    @Test
+    void conditional_decrement_loses_no_update_and_never_oversells(TestReporter reporter) throws Exception {
+        Type type = Type.ASSELIA;
+        vider(type);
+        int disponible = WRITERS * OPS_PER_WRITER / 2; // la moitie des demandes doit echouer
+        stockBruteService.augmenter(type, BigDecimal.valueOf(disponible));
+
+        AtomicInteger servies = new AtomicInteger();
+        AtomicInteger refusees = new AtomicInteger();
+        long nanos = hammer(() -> {
+            try {
+                stockBruteService.diminuer(type, BigDecimal.ONE);
+                servies.incrementAndGet();
+            } catch (IllegalArgumentException e) {
+                refusees.incrementAndGet();
+            }
+        });
+
+        assertEquals(disponible, servies.get());
+        assertEquals(WRITERS * OPS_PER_WRITER - disponible, refusees.get());
+        assertEquals(0, quantiteEnBase(type).signum());
+        reporter.publishEntry("conditional UPDATE ops/s", debit(nanos));
+    }
+
+    @Test
+    void legacy_read_modify_write_loses_updates(TestReporter reporter) throws Exception {
+        Type type = Type.kAULDA;
+        vider(type);
+        int total = WRITERS * OPS_PER_WRITER;
+        stockBruteService.augmenter(type, BigDecimal.valueOf(total));
+        Long id = stockBruteRepository.findIdBySite(stockBruteService.site(null)).orElseThrow();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        // ancien chemin: lecture de la quantite, calcul en Java, ecriture de la valeur absolue
+        AtomicInteger servies = new AtomicInteger();
+        long nanos = hammer(() -> tx.executeWithoutResult(s -> {
+            BigDecimal lu = jdbc.queryForObject("SELECT quantite FROM stock_brut_quantites WHERE stock_brut_id = ? AND stock_key = ?",
+                    BigDecimal.class, id, type.name());
+            if (lu.compareTo(BigDecimal.ONE) < 0) return;
+            jdbc.update("UPDATE stock_brut_quantites SET quantite = ? WHERE stock_brut_id = ? AND stock_key = ?",
+                    lu.subtract(BigDecimal.ONE), id, type.name());
+            servies.incrementAndGet();
+        }));
+
+        int retirees = total - quantiteEnBase(type).intValue();
+        assertTrue(servies.get() > retirees, "aucune mise a jour perdue: " + servies.get() + " retraits acceptes, " + retirees + " appliques");
+        reporter.publishEntry("legacy read-modify-write ops/s", debit(nanos));
+        reporter.publishEntry("legacy read-modify-write lost updates", String.valueOf(servies.get() - retirees));
+    }
+
+    private long hammer(Runnable op) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int w = 0; w < WRITERS; w++) {
+            pool.execute(() -> {
+                try { start.await(); } catch (InterruptedException e) { return; }
+                for (int i = 0; i < OPS_PER_WRITER; i++) op.run();
+            });
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES));
+        return System.nanoTime() - t0;
+    }
+
+    private static String debit(long nanos) {
+        return String.valueOf(Math.round(WRITERS * OPS_PER_WRITER / (nanos / 1e9)));
+    }
+
+    private void vider(Type type) {
+        BigDecimal q = stockBruteService.quantite(type);
+        if (q.signum() > 0) stockBruteService.diminuer(type, quantiteEnBase(type));
+    }
+
+    private BigDecimal quantiteEnBase(Type type) {
+        return stockBruteRepository.findBySite(stockBruteService.site(null)).orElseThrow().quantite(type);
+    }
+}
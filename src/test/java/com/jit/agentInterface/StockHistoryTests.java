@@ -0,0 +1,54 @@
+package com.jit.agentInterface;
+
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.service.StockHistoryService;
+import com.jit.agentInterface.service.StockHistoryService.Point;
+import com.jit.agentInterface.service.StockHistoryService.Resolution;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockHistoryTests {
+
+    private static final long T0 = 1_699_999_200_000L; // debut d'une heure
+
+    @Test
+    void aggregates_min_max_last_per_period_and_fills_gaps() {
+        StockHistoryService h = new StockHistoryService(60, 60, 24);
+        h.enregistrer("principal", Type.ZITBLAD, 10_000, T0);
+        h.enregistrer("principal", Type.ZITBLAD, 4_000, T0 + 200);
+        h.enregistrer("principal", Type.ZITBLAD, 7_000, T0 + 900);
+        h.enregistrer("principal", Type.ZITBLAD, 5_000, T0 + 3_000);
+
+        List<Point> s = h.historique("principal", Type.ZITBLAD, Resolution.SECONDE, T0 + 3_500);
+        assertEquals(4, s.size());
+        assertPoint(s.get(0), "4", "10", "7");
+        assertPoint(s.get(1), "7", "7", "7"); // periode sans mouvement
+        assertPoint(s.get(2), "7", "7", "7");
+        assertPoint(s.get(3), "5", "7", "5"); // commence au niveau precedent
+
+        List<Point> m = h.historique("principal", Type.ZITBLAD, Resolution.MINUTE, T0 + 3_500);
+        assertEquals(1, m.size());
+        assertPoint(m.get(0), "4", "10", "5");
+        assertTrue(h.historique("autre", Type.ZITBLAD, Resolution.HEURE, T0).isEmpty());
+    }
+
+    @Test
+    void keeps_only_the_window_of_the_ring() {
+        StockHistoryService h = new StockHistoryService(5, 5, 5);
+        for (int i = 0; i < 20; i++) h.enregistrer("principal", Type.ASSELIA, i * 1_000L, T0 + i * 1_000L);
+        List<Point> s = h.historique("principal", Type.ASSELIA, Resolution.SECONDE, T0 + 19_000);
+        assertEquals(5, s.size());
+        assertEquals(T0 + 15_000, s.get(0).t().toEpochMilli());
+        assertEquals(0, new BigDecimal("19").compareTo(s.get(4).last()));
+    }
+
+    private static void assertPoint(Point p, String min, String max, String last) {
+        assertEquals(0, new BigDecimal(min).compareTo(p.min()), "min");
+        assertEquals(0, new BigDecimal(max).compareTo(p.max()), "max");
+        assertEquals(0, new BigDecimal(last).compareTo(p.last()), "last");
+    }
+}
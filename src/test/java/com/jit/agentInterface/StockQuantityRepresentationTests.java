@@ -0,0 +1,94 @@
+package com.jit.agentInterface;
+
+import com.jit.agentInterface.model.Litrage;
+import com.jit.agentInterface.model.MillilitresConverter;
+import com.jit.agentInterface.service.StripedStockCounter;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Comparaison des representations du stock brut sur le chemin "une bouteille consomme son litrage":
+ * BigDecimal en litres (ancien) contre long en millilitres. Mesure les octets alloues par
+ * decrement via les compteurs d'allocation par thread de la JVM.
+ */
+class StockQuantityRepresentationTests {
+
+    private static final int OPS = 2_000_000;
+    private static final double[] LITRAGES = {0.5, 1.0, 2.0, 5.0};
+
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    void millilitres_round_trip_exactly_for_supported_litrages() {
+        for (double l : LITRAGES) {
+            long ml = new Litrage(l).millilitres();
+            assertEquals(0, BigDecimal.valueOf(l).compareTo(MillilitresConverter.versLitres(ml)));
+            assertEquals(ml, MillilitresConverter.versMl(BigDecimal.valueOf(l)));
+        }
+        assertThrows(IllegalArgumentException.class, () -> MillilitresConverter.versMl(new BigDecimal("0.0005")));
+    }
+
+    @Test
+    void long_millilitres_decrement_does_not_allocate() {
+        org.junit.jupiter.api.Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        Litrage[] litrages = new Litrage[LITRAGES.length];
+        for (int i = 0; i < LITRAGES.length; i++) litrages[i] = new Litrage(LITRAGES[i]);
+
+        bigDecimal(200_000); // chauffe
+        millilitres(litrages, 200_000);
+        striped(litrages, 200_000);
+
+        long before = allocated();
+        bigDecimal(OPS);
+        long bigDecimalBytes = allocated() - before;
+
+        before = allocated();
+        millilitres(litrages, OPS);
+        long mlBytes = allocated() - before;
+
+        before = allocated();
+        striped(litrages, OPS);
+        long stripedBytes = allocated() - before;
+
+        assertTrue(mlBytes < OPS / 100, "le decrement en millilitres ne doit pas allouer");
+        assertTrue(stripedBytes < OPS / 100, "le compteur reparti ne doit pas allouer");
+        assertTrue(bigDecimalBytes > mlBytes);
+    }
+
+    private BigDecimal bigDecimal(int ops) {
+        BigDecimal stock = BigDecimal.valueOf((long) ops * 5);
+        for (int i = 0; i < ops; i++) {
+            BigDecimal qte = BigDecimal.valueOf(LITRAGES[i & 3]);
+            if (stock.compareTo(qte) < 0) throw new IllegalStateException("stock insuffisant");
+            stock = stock.subtract(qte);
+        }
+        return stock;
+    }
+
+    private long millilitres(Litrage[] litrages, int ops) {
+        long stock = ops * 5_000L;
+        for (int i = 0; i < ops; i++) {
+            long qte = litrages[i & 3].millilitres();
+            if (stock < qte) throw new IllegalStateException("stock insuffisant");
+            stock -= qte;
+        }
+        return stock;
+    }
+
+    private long striped(Litrage[] litrages, int ops) {
+        StripedStockCounter stock = new StripedStockCounter(16, ops * 5_000L);
+        for (int i = 0; i < ops; i++) {
+            if (!stock.tryDecrement(litrages[i & 3].millilitres())) throw new IllegalStateException("stock insuffisant");
+        }
+        return stock.sum();
+    }
+
+    private long allocated() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,185 @@
+package com.jit.agentInterface;
+
+import com.jit.agentInterface.enums.MotifMouvement;
+import com.jit.agentInterface.enums.Type;
+import com.jit.agentInterface.repository.StockBruteRepository;
+import com.jit.agentInterface.repository.StockMouvementRepository;
+import com.jit.agentInterface.service.StockBruteService;
+import com.jit.agentInterface.service.StockHistoryService;
+import com.jit.agentInterface.service.StockJournalService;
+import com.jit.agentInterface.service.StockWriteBehind;
+import com.jit.agentInterface.service.WebhookDispatcherService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Mode write-behind de bout en bout via {@link StockBruteService}, base simulee: pas de survente sous
+ * contention, WAL coherent avec les cumuls, mouvements lies au sort de la transaction appelante, et
+ * application d'un lot en base. Le debit (objectif: plus de 100k mouvements/s sur un noeud) n'est
+ * verifie qu'avec -Dbenchmarks=true.
+ */
+class StockWriteBehindTests {
+
+    private static final Type TYPE = Type.values()[0];
+
+    @TempDir
+    Path walDir;
+
+    private final StockBruteRepository stockRepository = mock(StockBruteRepository.class);
+    private final StockJournalService journal = mock(StockJournalService.class);
+    private StockWriteBehind writeBehind;
+    private StockBruteService service;
+
+    @BeforeEach
+    void demarrer() throws Exception {
+        when(stockRepository.idDuSite(anyString(), anyBoolean())).thenReturn(1L);
+        PlatformTransactionManager tm = mock(PlatformTransactionManager.class);
+        writeBehind = new StockWriteBehind(stockRepository, mock(StockMouvementRepository.class), journal,
+                mock(WebhookDispatcherService.class), tm, true, "principal", 16, walDir.toString());
+        writeBehind.demarrer();
+        service = new StockBruteService(stockRepository, mock(WebhookDispatcherService.class), mock(StockJournalService.class),
+                writeBehind, new StockHistoryService(60, 60, 24), tm, 5000, "principal");
+    }
+
+    @AfterEach
+    void arreter() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) TransactionSynchronizationManager.clearSynchronization();
+        writeBehind.arreter();
+    }
+
+    @Test
+    void concurrent_withdrawals_never_oversell() throws Exception {
+        retirerEnParallele(16, 5_000);
+    }
+
+    // Opt-in (-Dbenchmarks=true): un seuil de debit n'a pas sa place dans mvn test sur une machine partagee
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void concurrent_withdrawals_reach_the_throughput_target() throws Exception {
+        double parSeconde = retirerEnParallele(16, 50_000);
+        assertTrue(parSeconde > 100_000, "debit insuffisant: " + (long) parSeconde + " mouvements/s");
+    }
+
+    // Sorties unitaires concurrentes sur un stock legerement insuffisant; verifie l'absence de survente et le WAL.
+    // @return mouvements par seconde
+    private double retirerEnParallele(int threads, int opsPerThread) throws Exception {
+        long initial = threads * (long) opsPerThread - 1_000; // quelques refus en fin de course
+        service.augmenterMl(null, TYPE, initial, MotifMouvement.APPROVISIONNEMENT);
+        AtomicLong accepted = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                try { start.await(); } catch (InterruptedException e) { return; }
+                long ok = 0;
+                for (int i = 0; i < opsPerThread; i++) {
+                    try {
+                        service.diminuerMl(TYPE, 1, MotifMouvement.BOUTEILLE);
+                        ok++;
+                    } catch (IllegalArgumentException e) {
+                        // stock insuffisant
+                    }
+                    if (i % 1_000 == 0) writeBehind.syncWal(); // commits groupes concurrents des mouvements
+                }
+                accepted.addAndGet(ok);
+            });
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+        double parSeconde = threads * (double) opsPerThread / ((System.nanoTime() - t0) / 1e9);
+
+        assertEquals(initial, accepted.get());
+        assertEquals(0, service.quantiteMl(null, TYPE));
+        writeBehind.syncWal();
+        assertEquals(0, sommeWal()); // toutes les lignes des voies sont dans le segment
+        return parSeconde;
+    }
+
+    @Test
+    void flush_applies_the_net_delta_once_locking_the_stock_row_before_journaling() {
+        service.augmenterMl(null, TYPE, 5_000, MotifMouvement.APPROVISIONNEMENT);
+        service.diminuerMl(TYPE, 1_500, MotifMouvement.BOUTEILLE);
+        writeBehind.flush();
+        writeBehind.flush(); // rien de nouveau: le lot commite n'est pas reapplique
+
+        ArgumentCaptor<BigDecimal> delta = ArgumentCaptor.forClass(BigDecimal.class);
+        InOrder ordre = inOrder(stockRepository, journal);
+        ordre.verify(stockRepository).augmenter(eq(1L), eq(TYPE.name()), delta.capture());
+        ordre.verify(journal, times(2)).enregistrer(eq("principal"), eq(TYPE), any(), any(), startsWith("write-behind:"));
+        assertEquals(0, new BigDecimal("3.5").compareTo(delta.getValue()));
+        verify(stockRepository, times(1)).augmenter(anyLong(), anyString(), any());
+    }
+
+    @Test
+    void withdrawal_is_given_back_when_the_transaction_rolls_back() {
+        service.augmenterMl(null, TYPE, 1_000, MotifMouvement.APPROVISIONNEMENT);
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.diminuerMl(TYPE, 400, MotifMouvement.BOUTEILLE);
+        assertEquals(600, service.quantiteMl(null, TYPE)); // prelevee tout de suite: refus synchrone
+        terminer(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(1_000, service.quantiteMl(null, TYPE));
+    }
+
+    @Test
+    void entry_is_applied_only_on_commit() {
+        TransactionSynchronizationManager.initSynchronization();
+        assertEquals(700, service.augmenterMl(null, TYPE, 700, MotifMouvement.APPROVISIONNEMENT));
+        assertEquals(0, service.quantiteMl(null, TYPE));
+        terminer(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertEquals(0, service.quantiteMl(null, TYPE));
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.augmenterMl(null, TYPE, 700, MotifMouvement.APPROVISIONNEMENT);
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        terminer(TransactionSynchronization.STATUS_COMMITTED);
+        assertEquals(700, service.quantiteMl(null, TYPE));
+    }
+
+    private static void terminer(int status) {
+        List<TransactionSynchronization> synchronisations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronisations, status);
+    }
+
+    private long sommeWal() throws Exception {
+        long total = 0;
+        try (Stream<Path> segments = Files.list(walDir)) {
+            for (Path p : segments.toList()) {
+                for (String ligne : Files.readAllLines(p, StandardCharsets.US_ASCII)) {
+                    total += Long.parseLong(ligne.split(" ")[2]);
+                }
+            }
+        }
+        return total;
+    }
+}
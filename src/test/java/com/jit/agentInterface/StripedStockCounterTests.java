@@ -0,0 +1,55 @@
+package com.jit.agentInterface;
+
+import com.jit.agentInterface.service.StripedStockCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compteurs du mode write-behind: jamais de survente sous contention. Le debit de bout en bout
+ * est couvert par {@link StockWriteBehindTests}.
+ */
+class StripedStockCounterTests {
+
+    @Test
+    void refuses_only_when_the_total_is_insufficient() {
+        StripedStockCounter c = new StripedStockCounter(4, 10);
+        assertTrue(c.tryDecrement(7)); // plus que la part d'une cellule: regroupement
+        assertFalse(c.tryDecrement(4));
+        assertEquals(3, c.sum());
+        c.add(1);
+        assertTrue(c.tryDecrement(4));
+        assertEquals(0, c.sum());
+    }
+
+    @Test
+    void concurrent_decrements_never_oversell() throws Exception {
+        int threads = 16, opsPerThread = 200_000;
+        long initial = threads * (long) opsPerThread / 2;
+        StripedStockCounter c = new StripedStockCounter(16, initial);
+        AtomicLong accepted = new AtomicLong();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                try { start.await(); } catch (InterruptedException e) { return; }
+                long ok = 0;
+                for (int i = 0; i < opsPerThread; i++) if (c.tryDecrement(1)) ok++;
+                accepted.addAndGet(ok);
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(initial, accepted.get());
+        assertEquals(0, c.sum());
+    }
+}
@@ -0,0 +1,84 @@
+package com.jit.agentInterface;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jit.agentInterface.enums.EventType;
+import com.jit.agentInterface.service.WebhookEnvelope;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Micro-benchmark d'allocation: enveloppe serialisee une fois par abonne (ancien dispatcher)
+ * contre une fois par evenement (bytes partages). Mesure via les compteurs d'allocation par thread de la JVM.
+ */
+class WebhookEnvelopeAllocationTests {
+
+    private static final int EVENTS = 2_000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final JsonNode payload = MAPPER.valueToTree(Map.of("type", "ZITBLAD", "delta", -1.0, "remaining", 1234.5));
+    private final Instant timestamp = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    void envelope_has_the_documented_shape() throws Exception {
+        JsonNode json = MAPPER.readTree(WebhookEnvelope.render(EventType.STOCK_CHANGED, timestamp, payload));
+        assertEquals("STOCK_CHANGED", json.get("eventType").asText());
+        assertEquals("2026-01-01T00:00:00Z", json.get("timestamp").asText());
+        assertEquals(payload, json.get("payload"));
+    }
+
+    @Test
+    void rendering_once_per_event_allocates_less_than_once_per_subscriber() throws Exception {
+        assumeAllocationCounters();
+        for (int subscribers : new int[]{1, 10, 100}) {
+            perSubscriber(subscribers, 200); // chauffe
+            oncePerEvent(subscribers, 200);
+            long before = allocated();
+            perSubscriber(subscribers, EVENTS);
+            long perSubscriberBytes = (allocated() - before) / EVENTS;
+            before = allocated();
+            oncePerEvent(subscribers, EVENTS);
+            long oncePerEventBytes = (allocated() - before) / EVENTS;
+            if (subscribers > 1) assertTrue(oncePerEventBytes < perSubscriberBytes);
+        }
+    }
+
+    private int perSubscriber(int subscribers, int events) throws Exception {
+        int sink = 0;
+        for (int e = 0; e < events; e++) {
+            for (int s = 0; s < subscribers; s++) {
+                Map<String, Object> event = new HashMap<>();
+                event.put("eventType", EventType.STOCK_CHANGED.name());
+                event.put("timestamp", timestamp.toString());
+                event.put("payload", payload);
+                sink += MAPPER.writeValueAsString(event).length();
+            }
+        }
+        return sink;
+    }
+
+    private int oncePerEvent(int subscribers, int events) throws Exception {
+        int sink = 0;
+        for (int e = 0; e < events; e++) {
+            byte[] body = WebhookEnvelope.render(EventType.STOCK_CHANGED, timestamp, payload);
+            for (int s = 0; s < subscribers; s++) sink += body.length;
+        }
+        return sink;
+    }
+
+    private long allocated() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private void assumeAllocationCounters() {
+        org.junit.jupiter.api.Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+}
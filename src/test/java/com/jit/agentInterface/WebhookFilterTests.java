@@ -0,0 +1,49 @@
+package com.jit.agentInterface;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jit.agentInterface.service.WebhookFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookFilterTests {
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    private JsonNode stock(String type, double remaining) {
+        return om.valueToTree(Map.of("type", type, "delta", -1, "remaining", remaining));
+    }
+
+    @Test
+    void equality_and_threshold_are_combined() {
+        WebhookFilter f = WebhookFilter.compile("type == ZITBLAD && remaining < 100");
+        assertTrue(f.matches(stock("ZITBLAD", 99.5)));
+        assertFalse(f.matches(stock("ZITBLAD", 100)));
+        assertFalse(f.matches(stock("ASSELIA", 10)));
+    }
+
+    @Test
+    void numeric_equality_matches_numbers_and_quoted_strings() {
+        JsonNode vente = om.valueToTree(Map.of("vendeurId", 12, "montantTotal", 250.0));
+        assertTrue(WebhookFilter.compile("vendeurId == 12").matches(vente));
+        assertTrue(WebhookFilter.compile("montantTotal >= 250 AND vendeurId != 13").matches(vente));
+        assertFalse(WebhookFilter.compile("vendeurId == '13'").matches(vente));
+    }
+
+    @Test
+    void missing_field_only_satisfies_not_equal() {
+        JsonNode payload = stock("ZITBLAD", 5);
+        assertFalse(WebhookFilter.compile("montantTotal > 0").matches(payload));
+        assertTrue(WebhookFilter.compile("category != EMBALLAGE").matches(payload));
+    }
+
+    @Test
+    void blank_expression_matches_everything_and_invalid_ones_are_rejected() {
+        assertTrue(WebhookFilter.compile(" ").isMatchAll());
+        assertThrows(IllegalArgumentException.class, () -> WebhookFilter.compile("remaining < beaucoup"));
+        assertThrows(IllegalArgumentException.class, () -> WebhookFilter.compile("type = ZITBLAD"));
+    }
+}